@@ -78,5 +78,286 @@ public interface Consts {
 	 * Default ftp timezone  
 	 */
 	final static String FTP_CONFIG_DEF_TIME_ZONE = "Europe/Budapest"; //$NON-NLS-1$
+	
+	/**
+	 * Streaming upload key, if it is true the response file is uploaded while it is being written
+	 */
+	final static String FTP_CONFIG_KEY_STREAMING = FTP_KEY + "streaming"; //$NON-NLS-1$
+	
+	/**
+	 * Default of the streaming upload
+	 */
+	final static boolean FTP_CONFIG_DEF_STREAMING = false;
+	
+	/**
+	 * Compressed upload key, if it is true the response file is uploaded with gzip in binary mode
+	 */
+	final static String FTP_CONFIG_KEY_COMPRESS = FTP_KEY + "compress"; //$NON-NLS-1$
+	
+	/**
+	 * Default of the compressed upload
+	 */
+	final static boolean FTP_CONFIG_DEF_COMPRESS = false;
+	
+	/**
+	 * Size of the upload buffer in bytes key
+	 */
+	final static String FTP_CONFIG_KEY_BUFFER_SIZE = FTP_KEY + "buffersize"; //$NON-NLS-1$
+	
+	/**
+	 * Default size of the upload buffer
+	 */
+	final static int FTP_CONFIG_DEF_BUFFER_SIZE = 256 * 1024;
+	
+	/**
+	 * Max number of attempts of an upload key
+	 */
+	final static String FTP_CONFIG_KEY_ATTEMPTS = FTP_KEY + "attempts"; //$NON-NLS-1$
+	
+	/**
+	 * Default max number of attempts of an upload
+	 */
+	final static int FTP_CONFIG_DEF_ATTEMPTS = 5;
+	
+	/**
+	 * Wait before the first retry of an upload in milliseconds key, it is doubled before every next retry
+	 */
+	final static String FTP_CONFIG_KEY_BACKOFF = FTP_KEY + "backoff"; //$NON-NLS-1$
+	
+	/**
+	 * Default wait before the first retry
+	 */
+	final static long FTP_CONFIG_DEF_BACKOFF = 1000;
+	
+	/**
+	 * Max wait before a retry of an upload in milliseconds key
+	 */
+	final static String FTP_CONFIG_KEY_MAX_BACKOFF = FTP_KEY + "maxbackoff"; //$NON-NLS-1$
+	
+	/**
+	 * Default max wait before a retry
+	 */
+	final static long FTP_CONFIG_DEF_MAX_BACKOFF = 60 * 1000;
+	
+	/**
+	 * Resumed retry key, if it is true a retry of a binary upload continues from the size of the remote file
+	 */
+	final static String FTP_CONFIG_KEY_RESUME = FTP_KEY + "resume"; //$NON-NLS-1$
+	
+	/**
+	 * Default of the resumed retry
+	 */
+	final static boolean FTP_CONFIG_DEF_RESUME = true;
+	
+	/**
+	 * Timeout of the connection and the data transfer in milliseconds key
+	 */
+	final static String FTP_CONFIG_KEY_TIMEOUT = FTP_KEY + "timeout"; //$NON-NLS-1$
+	
+	/**
+	 * Default timeout of the connection and the data transfer
+	 */
+	final static int FTP_CONFIG_DEF_TIMEOUT = 60 * 1000;
+	
+	/**
+	 * Number of parallel connections of a parted upload key, 1 means the file is uploaded in one piece
+	 */
+	final static String FTP_CONFIG_KEY_CONNECTIONS = FTP_KEY + "connections"; //$NON-NLS-1$
+	
+	/**
+	 * Default number of parallel connections
+	 */
+	final static int FTP_CONFIG_DEF_CONNECTIONS = 1;
+	
+	/**
+	 * Size of the parts of a parted upload in bytes key
+	 */
+	final static String FTP_CONFIG_KEY_PART_SIZE = FTP_KEY + "partsize"; //$NON-NLS-1$
+	
+	/**
+	 * Default size of the parts
+	 */
+	final static long FTP_CONFIG_DEF_PART_SIZE = 64 * 1024 * 1024;
+
+	final static String IMPORT_KEY = "import."; 		 //$NON-NLS-1$
+	
+	/**
+	 * Number of parser threads key, 1 is the sequential reader, 0 means the number of processors
+	 */
+	final static String IMPORT_CONFIG_KEY_THREADS = IMPORT_KEY + "threads"; //$NON-NLS-1$
+	
+	/**
+	 * Default number of parser threads (sequential)
+	 */
+	final static int IMPORT_CONFIG_DEF_THREADS = 1;
+	
+	/**
+	 * Size of a range in bytes for the parallel reader key
+	 */
+	final static String IMPORT_CONFIG_KEY_CHUNK_SIZE = IMPORT_KEY + "chunksize"; //$NON-NLS-1$
+	
+	/**
+	 * Default size of a range for the parallel reader (16MB)
+	 */
+	final static int IMPORT_CONFIG_DEF_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Number of orders in a database transaction key, 0 means a single transaction
+	 */
+	final static String IMPORT_CONFIG_KEY_COMMIT_SIZE = IMPORT_KEY + "commitsize"; //$NON-NLS-1$
+	
+	/**
+	 * Default number of orders in a database transaction
+	 */
+	final static int IMPORT_CONFIG_DEF_COMMIT_SIZE = 1000;
+
+	/**
+	 * Persistence backend key, jpa or copy. copy works only with PostgreSQL
+	 */
+	final static String IMPORT_CONFIG_KEY_BACKEND = IMPORT_KEY + "backend"; //$NON-NLS-1$
+	
+	/**
+	 * Default persistence backend
+	 */
+	final static String IMPORT_CONFIG_DEF_BACKEND = "jpa"; //$NON-NLS-1$
+
+	/**
+	 * Strategy of the database checks of ids key, find, batch or preload
+	 */
+	final static String IMPORT_CONFIG_KEY_ID_LOOKUP = IMPORT_KEY + "idlookup"; //$NON-NLS-1$
+	
+	/**
+	 * Default strategy of the database checks of ids
+	 */
+	final static String IMPORT_CONFIG_DEF_ID_LOOKUP = "batch"; //$NON-NLS-1$
+
+	/**
+	 * Grouping mode of the lines key, memory, sorted or external
+	 */
+	final static String IMPORT_CONFIG_KEY_GROUPING = IMPORT_KEY + "grouping"; //$NON-NLS-1$
+	
+	/**
+	 * Default grouping mode of the lines
+	 */
+	final static String IMPORT_CONFIG_DEF_GROUPING = "memory"; //$NON-NLS-1$
+
+	/**
+	 * Memory budget of the external grouping in megabytes key
+	 */
+	final static String IMPORT_CONFIG_KEY_MEMORY_BUDGET = IMPORT_KEY + "memorybudget"; //$NON-NLS-1$
+	
+	/**
+	 * Default memory budget of the external grouping in megabytes
+	 */
+	final static int IMPORT_CONFIG_DEF_MEMORY_BUDGET = 256;
+	
+	/**
+	 * Directory of the run files of the external grouping key, empty means the temporary directory
+	 */
+	final static String IMPORT_CONFIG_KEY_SPILL_DIR = IMPORT_KEY + "spilldir"; //$NON-NLS-1$
+	
+	/**
+	 * Default directory of the run files
+	 */
+	final static String IMPORT_CONFIG_DEF_SPILL_DIR = ""; //$NON-NLS-1$
+	
+	final static String RESPONSE_KEY = "response."; 		 //$NON-NLS-1$
+	
+	/**
+	 * Asynchronous writing of the response file key, true or false
+	 */
+	final static String RESPONSE_CONFIG_KEY_ASYNC = RESPONSE_KEY + "async"; //$NON-NLS-1$
+	
+	/**
+	 * Default asynchronous writing of the response file
+	 */
+	final static boolean RESPONSE_CONFIG_DEF_ASYNC = true;
+	
+	/**
+	 * Size of the buffer of the response file in characters key
+	 */
+	final static String RESPONSE_CONFIG_KEY_BUFFER_SIZE = RESPONSE_KEY + "buffersize"; //$NON-NLS-1$
+	
+	/**
+	 * Default size of the buffer of the response file
+	 */
+	final static int RESPONSE_CONFIG_DEF_BUFFER_SIZE = 1024 * 1024;
+	
+	/**
+	 * Format of the response file key, full or compact
+	 */
+	final static String RESPONSE_CONFIG_KEY_FORMAT = RESPONSE_KEY + "format"; //$NON-NLS-1$
+	
+	/**
+	 * Default format of the response file
+	 */
+	final static String RESPONSE_CONFIG_DEF_FORMAT = "full"; //$NON-NLS-1$
+	
+	final static String DAEMON_KEY = "daemon."; 		 //$NON-NLS-1$
+	
+	/**
+	 * Daemon mode key, if it is true the application converts the files of the inbox until it is stopped
+	 */
+	final static String DAEMON_CONFIG_KEY_ENABLED = DAEMON_KEY + "enabled"; //$NON-NLS-1$
+	
+	/**
+	 * Default of the daemon mode
+	 */
+	final static boolean DAEMON_CONFIG_DEF_ENABLED = false;
+	
+	/**
+	 * Watched directory of the input files key
+	 */
+	final static String DAEMON_CONFIG_KEY_INBOX = DAEMON_KEY + "inbox"; //$NON-NLS-1$
+	
+	/**
+	 * Default watched directory
+	 */
+	final static String DAEMON_CONFIG_DEF_INBOX = "/tmp/wob/inbox"; //$NON-NLS-1$
+	
+	/**
+	 * Directory of the response files key
+	 */
+	final static String DAEMON_CONFIG_KEY_OUTBOX = DAEMON_KEY + "outbox"; //$NON-NLS-1$
+	
+	/**
+	 * Default directory of the response files
+	 */
+	final static String DAEMON_CONFIG_DEF_OUTBOX = "/tmp/wob/outbox"; //$NON-NLS-1$
+	
+	/**
+	 * Directory of the converted input files key
+	 */
+	final static String DAEMON_CONFIG_KEY_DONE = DAEMON_KEY + "done"; //$NON-NLS-1$
+	
+	/**
+	 * Default directory of the converted input files
+	 */
+	final static String DAEMON_CONFIG_DEF_DONE = "/tmp/wob/done"; //$NON-NLS-1$
+	
+	/**
+	 * Directory of the input files whose conversion failed key
+	 */
+	final static String DAEMON_CONFIG_KEY_FAILED = DAEMON_KEY + "failed"; //$NON-NLS-1$
+	
+	/**
+	 * Default directory of the input files whose conversion failed
+	 */
+	final static String DAEMON_CONFIG_DEF_FAILED = "/tmp/wob/failed"; //$NON-NLS-1$
+	
+	/**
+	 * Time without changes before an input file is converted in milliseconds key
+	 */
+	final static String DAEMON_CONFIG_KEY_SETTLE = DAEMON_KEY + "settle"; //$NON-NLS-1$
+	
+	/**
+	 * Default time without changes before an input file is converted
+	 */
+	final static long DAEMON_CONFIG_DEF_SETTLE = 500;
+	
+	/**
+	 * Bytes in a megabyte
+	 */
+	final static long MEGABYTE = 1024 * 1024;
 		
 }
@@ -1,10 +1,24 @@
 package com.zamek.wob;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
 
 import com.zamek.wob.config.Config;
 import com.zamek.wob.csv.CSVImporter;
+import com.zamek.wob.csv.ResponseFile;
+import com.zamek.wob.daemon.InboxWatcher;
+import com.zamek.wob.db.IdLookup;
+import com.zamek.wob.db.OrderWriter;
 import com.zamek.wob.ftp.FtpUploader;
+import com.zamek.wob.util.TailInputStream;
 
 /**
  * Import CSV file to a Database Application.
@@ -33,13 +47,40 @@ public class WobApplication {
 		System.exit(-1);
 	}
 	
+	/**
+	 * Running the import and the upload of the response file parallel
+	 * 
+	 * <p>The upload is started on a thread before the import, it reads the response file through a TailInputStream
+	 * while the import writes it, so the run takes max(import, upload) instead of their sum.</p>
+	 * 
+	 * @param csvImporter configured importer
+	 * @param ftpUploader uploader of the response file
+	 * @param responseFile name of the response file
+	 * @return true if the import finished successfully
+	 * @throws Exception if the upload failed
+	 */
+	private static boolean streamConversion(CSVImporter csvImporter, FtpUploader ftpUploader, String responseFile) throws Exception {
+		TailInputStream tail = new TailInputStream(Paths.get(responseFile));
+		FutureTask<Void> upload = new FutureTask<>(() -> {
+			try (TailInputStream in = tail) {
+				ftpUploader.upload(in);
+			}
+			return null;
+		});
+		new Thread(upload, "ftp-upload").start(); //$NON-NLS-1$
+		boolean imported = csvImporter.setResponseTail(tail).process();
+		try {
+			upload.get();
+		}
+		catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+		return imported;
+	}
+	
 	private static void startConversion(String inputFile, String responseFile) {
 		try {
-			CSVImporter csvImporter = new CSVImporter(inputFile, responseFile, Config.getInstance().getEntityManager());
-			if (csvImporter.process()) {
-				FtpUploader ftpUploader= new FtpUploader(responseFile);
-				ftpUploader.upload();
-			}
+			convert(inputFile, responseFile, Config.getInstance().getEntityManager());
 			System.out.println("Conversion finished successfully"); //$NON-NLS-1$
 		}
 		catch (Exception e) {
@@ -47,6 +88,91 @@ public class WobApplication {
 		}
 		
 	}
+	
+	/**
+	 * Converting a file and uploading its response file
+	 * 
+	 * @param inputFile name of the input file
+	 * @param responseFile name of the response file
+	 * @param em Entity Manager of the conversion
+	 * @throws Exception if the configuration is wrong, the import or the upload failed
+	 */
+	private static void convert(String inputFile, String responseFile, EntityManager em) throws Exception {
+		Configuration cfg = Config.getInstance().getConfig();
+		CSVImporter csvImporter = new CSVImporter(inputFile, responseFile, em)
+				.setThreads(cfg.getInt(Consts.IMPORT_CONFIG_KEY_THREADS, Consts.IMPORT_CONFIG_DEF_THREADS))
+				.setChunkSize(cfg.getInt(Consts.IMPORT_CONFIG_KEY_CHUNK_SIZE, Consts.IMPORT_CONFIG_DEF_CHUNK_SIZE))
+				.setCommitSize(cfg.getInt(Consts.IMPORT_CONFIG_KEY_COMMIT_SIZE, Consts.IMPORT_CONFIG_DEF_COMMIT_SIZE))
+				.setBackend(OrderWriter.Backend.byString(cfg.getString(Consts.IMPORT_CONFIG_KEY_BACKEND, Consts.IMPORT_CONFIG_DEF_BACKEND)))
+				.setIdLookup(IdLookup.Strategy.byString(cfg.getString(Consts.IMPORT_CONFIG_KEY_ID_LOOKUP, Consts.IMPORT_CONFIG_DEF_ID_LOOKUP)))
+				.setGrouping(CSVImporter.Grouping.byString(cfg.getString(Consts.IMPORT_CONFIG_KEY_GROUPING, Consts.IMPORT_CONFIG_DEF_GROUPING)))
+				.setMemoryBudget(cfg.getLong(Consts.IMPORT_CONFIG_KEY_MEMORY_BUDGET, Consts.IMPORT_CONFIG_DEF_MEMORY_BUDGET) * Consts.MEGABYTE)
+				.setSpillDirectory(cfg.getString(Consts.IMPORT_CONFIG_KEY_SPILL_DIR, Consts.IMPORT_CONFIG_DEF_SPILL_DIR))
+				.setResponseBufferSize(cfg.getInt(Consts.RESPONSE_CONFIG_KEY_BUFFER_SIZE, Consts.RESPONSE_CONFIG_DEF_BUFFER_SIZE))
+				.setAsyncResponse(cfg.getBoolean(Consts.RESPONSE_CONFIG_KEY_ASYNC, Consts.RESPONSE_CONFIG_DEF_ASYNC))
+				.setResponseFormat(ResponseFile.Format.byString(cfg.getString(Consts.RESPONSE_CONFIG_KEY_FORMAT, Consts.RESPONSE_CONFIG_DEF_FORMAT)));
+		FtpUploader ftpUploader= new FtpUploader(responseFile);
+		boolean imported;
+		if (cfg.getBoolean(Consts.FTP_CONFIG_KEY_STREAMING, Consts.FTP_CONFIG_DEF_STREAMING)) 
+			imported = streamConversion(csvImporter, ftpUploader, responseFile);
+		else {
+			imported = csvImporter.process();
+			if (imported) 
+				ftpUploader.upload();
+		}
+		if (!imported)
+			throw new IOException("Import of "+inputFile+" failed, details in log"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+	
+	/**
+	 * Running as a daemon
+	 * 
+	 * <p>The Entity Manager Factory and the configuration are initialized once, then the CSV files arriving into 
+	 * daemon.inbox are converted one by one into their own response files in daemon.outbox and uploaded. The input files 
+	 * are moved into daemon.done or into daemon.failed if the import or the upload failed. Every file 
+	 * has its own Entity Manager from the warm factory. The daemon runs until the JVM is stopped, the conversion in 
+	 * progress is finished before the exit.</p>
+	 */
+	private static void startDaemon() {
+		Configuration cfg = Config.getInstance().getConfig();
+		EntityManagerFactory emf = Config.getInstance().getEntityManagerFactory();
+		try (InboxWatcher watcher = new InboxWatcher(Paths.get(cfg.getString(Consts.DAEMON_CONFIG_KEY_INBOX, Consts.DAEMON_CONFIG_DEF_INBOX)),
+				Paths.get(cfg.getString(Consts.DAEMON_CONFIG_KEY_OUTBOX, Consts.DAEMON_CONFIG_DEF_OUTBOX)),
+				Paths.get(cfg.getString(Consts.DAEMON_CONFIG_KEY_DONE, Consts.DAEMON_CONFIG_DEF_DONE)),
+				Paths.get(cfg.getString(Consts.DAEMON_CONFIG_KEY_FAILED, Consts.DAEMON_CONFIG_DEF_FAILED)),
+				cfg.getLong(Consts.DAEMON_CONFIG_KEY_SETTLE, Consts.DAEMON_CONFIG_DEF_SETTLE),
+				(input, response) -> {
+					EntityManager em = emf.createEntityManager();
+					try {
+						convert(input.toString(), response.toString(), em);
+					}
+					finally {
+						em.close();
+					}
+				})) {
+			Thread daemon = Thread.currentThread();
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					watcher.stop();
+					daemon.join();
+				}
+				catch (IOException e) {
+					System.out.println("Cannot stop watching:"+e.getMessage()); //$NON-NLS-1$
+				}
+				catch (@SuppressWarnings("unused") InterruptedException e) {
+					//NC JVM is stopped
+				}
+			}, "daemon-stop")); //$NON-NLS-1$
+			watcher.run();
+		}
+		catch (IOException e) {
+			System.out.println("Fatal error:"+e.getMessage()); //$NON-NLS-1$
+		}
+		finally {
+			emf.close();
+		}
+	}
+	
 	/**
 	 * Entry point of the application. 
 	 * 
@@ -54,6 +180,8 @@ public class WobApplication {
 	 * 
 	 * Usage: app inputfile 
 	 * 
+	 * If daemon.enabled is true in the application.properties the app runs as a daemon and converts the files of daemon.inbox
+	 * 
 	 * @param args if inputfile is empty, the default filename will be used from the application.properties
 	 * 
 	 */
@@ -61,6 +189,10 @@ public class WobApplication {
 		if (!Config.isConfigExists()) {
 			configNotExists();
 		}
+		if (Config.getInstance().getConfig().getBoolean(Consts.DAEMON_CONFIG_KEY_ENABLED, Consts.DAEMON_CONFIG_DEF_ENABLED)) {
+			startDaemon();
+			return;
+		}
 		String inputFile = Config.getInstance().getInputFileName();
 		if (StringUtils.isEmpty(inputFile)) 
 			fileError("input"); //$NON-NLS-1$
@@ -46,6 +46,8 @@ javax.persistence.jdbc.user=sa
 javax.persistence.jdbc.password=
 eclipselink.ddl-generation=create-tables
 eclipselink.logging.level=OFF
+eclipselink.jdbc.batch-writing=JDBC
+eclipselink.jdbc.batch-writing.size=1000
 input.csvfile=/tmp/input.csv
 response.csvfile=/tmp/response.csv
 
@@ -75,6 +77,16 @@ public class Config implements HasLogger {
 	private final static String KEY_JDBC_LOG_LEVEL = "eclipselink.logging.level"; //$NON-NLS-1$
 	private final static String DEF_JDBC_LOG_LEVEL = "OFF"; //$NON-NLS-1$
 	
+	private final static String KEY_JDBC_BATCH_WRITING = "eclipselink.jdbc.batch-writing"; //$NON-NLS-1$
+	private final static String DEF_JDBC_BATCH_WRITING = "JDBC"; //$NON-NLS-1$
+	private final static String NO_BATCH_WRITING = "None"; //$NON-NLS-1$
+	
+	private final static String KEY_JDBC_BATCH_SIZE = "eclipselink.jdbc.batch-writing.size"; //$NON-NLS-1$
+	private final static int DEF_JDBC_BATCH_SIZE = 1000; 
+	
+	private final static String POSTGRESQL_URL = "jdbc:postgresql:"; //$NON-NLS-1$
+	private final static String POSTGRESQL_REWRITE_BATCH = "reWriteBatchedInserts"; //$NON-NLS-1$
+	
 	public final static String KEY_INPUT_CSV = "input.csvfile"; //$NON-NLS-1$ 
 	public final static String DEF_INPUT_CSV = "/tmp/input.csv"; //$NON-NLS-1$
 
@@ -85,6 +97,7 @@ public class Config implements HasLogger {
     
 	private Configuration config;
     private Map<String, Object> jdbcConfig=null;
+    private EntityManagerFactory entityManagerFactory;
     private EntityManager entityManager;
     
 	private Config() {
@@ -131,19 +144,34 @@ public class Config implements HasLogger {
 		<li>eclipselink.ddl-generation</li>
 		<li>eclipselink.logging.level</li>
 	 * </ul>
+	 * <p>Inserts are sent in JDBC batches:</p>
+	 * <ul>
+	 * 	<li>eclipselink.jdbc.batch-writing : JDBC by default, None switches it off</li>
+	 * 	<li>eclipselink.jdbc.batch-writing.size : number of statements in a batch, default is 1000</li>
+	 * </ul>
+	 * <p>With PostgreSQL the reWriteBatchedInserts parameter is added to the url if it is not set, so the driver 
+	 * sends the batched inserts as multi-row statements.</p>
 	 * @return DbConfig Map
 	 */
 	public Map<String, Object> getDbConfig() {
 		if (this.jdbcConfig!=null)
 			return this.jdbcConfig;
 		
+		String batchWriting = this.config.getString(KEY_JDBC_BATCH_WRITING, DEF_JDBC_BATCH_WRITING);
+		String url = this.config.getString(KEY_JDBC_URL);
+		if (!NO_BATCH_WRITING.equalsIgnoreCase(batchWriting) && url != null 
+				&& url.startsWith(POSTGRESQL_URL) && !url.contains(POSTGRESQL_REWRITE_BATCH))
+			url += (url.contains("?") ? '&' : '?') + POSTGRESQL_REWRITE_BATCH + "=true"; //$NON-NLS-1$ //$NON-NLS-2$
+		
 		this.jdbcConfig =  new HashMap<>();
 		this.jdbcConfig.put(KEY_JDBC_DRIVER, this.config.getString(KEY_JDBC_DRIVER, DEF_JDBC_DRIVER));
-		this.jdbcConfig.put(KEY_JDBC_URL, this.config.getString(KEY_JDBC_URL));
+		this.jdbcConfig.put(KEY_JDBC_URL, url);
 		this.jdbcConfig.put(KEY_JDBC_USER, this.config.getString(KEY_JDBC_USER, DEF_JDBC_USER));
 		this.jdbcConfig.put(KEY_JDBC_PASSWD, this.config.getString(KEY_JDBC_PASSWD, DEF_JDBC_PASSWORD));
 		this.jdbcConfig.put(KEY_JDBC_DDL_GENERATION, this.config.getString(KEY_JDBC_DDL_GENERATION, DEF_JDBC_DDL_GENERATION));
 		this.jdbcConfig.put(KEY_JDBC_LOG_LEVEL, this.config.getString(KEY_JDBC_LOG_LEVEL, DEF_JDBC_LOG_LEVEL));
+		this.jdbcConfig.put(KEY_JDBC_BATCH_WRITING, batchWriting);
+		this.jdbcConfig.put(KEY_JDBC_BATCH_SIZE, Integer.toString(this.config.getInt(KEY_JDBC_BATCH_SIZE, DEF_JDBC_BATCH_SIZE)));
 		
 		return this.jdbcConfig;
 	}
@@ -183,6 +211,8 @@ public class Config implements HasLogger {
 		cfg.setProperty(KEY_JDBC_PASSWD, DEF_JDBC_PASSWORD);
 		cfg.setProperty(KEY_JDBC_DDL_GENERATION, DEF_JDBC_DDL_GENERATION);
 		cfg.setProperty(KEY_JDBC_LOG_LEVEL, DEF_JDBC_LOG_LEVEL);
+		cfg.setProperty(KEY_JDBC_BATCH_WRITING, DEF_JDBC_BATCH_WRITING);
+		cfg.setProperty(KEY_JDBC_BATCH_SIZE, Integer.valueOf(DEF_JDBC_BATCH_SIZE));
 		cfg.setProperty(KEY_INPUT_CSV, DEF_INPUT_CSV);
 		cfg.setProperty(KEY_RESPONSE_CSV, DEF_RESPONSE_CSV);
 		cfg.setProperty(Consts.FTP_CONFIG_KEY_HOST, "???"); //$NON-NLS-1$
@@ -218,10 +248,22 @@ public class Config implements HasLogger {
 	 * @return the preinitialized Entity manager
 	 */
 	public EntityManager getEntityManager() {
-		if (this.entityManager == null) {
-			EntityManagerFactory emf = Persistence.createEntityManagerFactory(Consts.PERSISTENCE_NAME, getDbConfig());
-			this.entityManager = emf.createEntityManager();
-		}
+		if (this.entityManager == null) 
+			this.entityManager = getEntityManagerFactory().createEntityManager();
 		return this.entityManager;
 	}
+	
+	/**
+	 * Get the Entity Manager Factory
+	 * 
+	 * <p>It is created once, so the metadata processing and the schema generation run only at the first call. 
+	 * A long running application can create an Entity Manager for every unit of work from it.</p>
+	 * 
+	 * @return the preinitialized Entity Manager Factory
+	 */
+	public synchronized EntityManagerFactory getEntityManagerFactory() {
+		if (this.entityManagerFactory == null) 
+			this.entityManagerFactory = Persistence.createEntityManagerFactory(Consts.PERSISTENCE_NAME, getDbConfig());
+		return this.entityManagerFactory;
+	}
 }
@@ -1,29 +1,43 @@
 package com.zamek.wob.csv;
 
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import javax.persistence.EntityManager;
-import javax.persistence.EntityTransaction;
-import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceException;
 
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
 import com.zamek.wob.Consts;
+import com.zamek.wob.db.BatchIdLookup;
+import com.zamek.wob.db.CopyOrderWriter;
+import com.zamek.wob.db.FindIdLookup;
+import com.zamek.wob.db.IdLookup;
+import com.zamek.wob.db.JpaOrderWriter;
+import com.zamek.wob.db.OrderWriter;
+import com.zamek.wob.db.PreloadIdLookup;
 import com.zamek.wob.domain.ConvertException;
 import com.zamek.wob.domain.order.Order;
 import com.zamek.wob.domain.order.OrderBuilder;
 import com.zamek.wob.domain.orderitem.OrderItem;
 import com.zamek.wob.domain.orderitem.OrderItemBuilder;
+import com.zamek.wob.util.ByteParser;
 import com.zamek.wob.util.HasLogger;
+import com.zamek.wob.util.LongHashSet;
+import com.zamek.wob.util.LongLongMap;
+import com.zamek.wob.util.LongObjectMap;
+import com.zamek.wob.util.MemoCache;
+import com.zamek.wob.util.TailInputStream;
 
 /**
  * CSV importer class. 
@@ -81,6 +95,55 @@ public class CSVImporter implements HasLogger{
 			 											BUYER_EMAIL, ADDRESS, POST_CODE, SALE_PRICE, SHIPPING_PRICE, 
 			 											SKU, STATUS, ORDER_DATE};
 	
+	private final static int IDX_LINE_NUMBER = 0;
+	private final static int IDX_ORDER_ITEM_ID = 1;
+	private final static int IDX_ORDER_ID = 2;
+	private final static int IDX_BUYER_NAME = 3;
+	private final static int IDX_BUYER_EMAIL = 4;
+	private final static int IDX_ADDRESS = 5;
+	private final static int IDX_POST_CODE = 6;
+	private final static int IDX_SALE_PRICE = 7;
+	private final static int IDX_SHIPPING_PRICE = 8;
+	private final static int IDX_SKU = 9;
+	private final static int IDX_STATUS = 10;
+	private final static int IDX_ORDER_DATE = 11;
+	
+	public final static String ST_MEMORY = "MEMORY"; //$NON-NLS-1$
+	public final static String ST_SORTED = "SORTED"; //$NON-NLS-1$
+	public final static String ST_EXTERNAL = "EXTERNAL"; //$NON-NLS-1$
+	
+	/**
+	 * Grouping modes of the lines by OrderId
+	 */
+	public enum Grouping {
+		/**
+		 * Every order is kept in memory until the end of the file, the input can be in any order
+		 */
+		MEMORY,
+		
+		/**
+		 * The input is sorted by OrderId, an order is written when the OrderId changes
+		 */
+		SORTED,
+		
+		/**
+		 * The lines are sorted by OrderId on disk if they don't fit into the memory budget
+		 */
+		EXTERNAL;
+		
+		public static Grouping byString(String s) throws ConvertException {
+			switch(s.toUpperCase()) {
+			case ST_MEMORY : return MEMORY;
+			case ST_SORTED : return SORTED;
+			case ST_EXTERNAL : return EXTERNAL;
+			default:
+				throw new ConvertException("Unknown grouping mode:"+s); //$NON-NLS-1$
+			}
+		}
+	}
+	
+	private final static String TMP_DIR = "java.io.tmpdir"; //$NON-NLS-1$
+	
 	public static final CSVFormat CSV_FILE_FORMAT = CSVFormat.DEFAULT.withDelimiter(Consts.FIELD_DELIMITER).withFirstRecordAsHeader()
 														.withIgnoreEmptyLines().withRecordSeparator(Consts.RECORD_SEPARATOR);
 	
@@ -89,10 +152,33 @@ public class CSVImporter implements HasLogger{
 	private String responseFileName;
 	private int validRows;
 	private int errorRows;
+	private boolean failed;
 	private int lines;
-	private ResponseFile response;
-	private Map<Order, List<OrderItem>> orders;
+	private int threads = 1;
+	private int chunkSize = Consts.IMPORT_CONFIG_DEF_CHUNK_SIZE;
+	private int commitSize = Consts.IMPORT_CONFIG_DEF_COMMIT_SIZE;
+	private volatile ResponseFile response;
+	private LongObjectMap<OrderGroup> orders;
+	private LongHashSet itemIds;
 	private EntityManager entityManager;
+	private OrderWriter.Backend backend = OrderWriter.Backend.JPA;
+	private OrderWriter writer;
+	private IdLookup.Strategy lookupStrategy = IdLookup.Strategy.BATCH;
+	private IdLookup idLookup;
+	private long[] prefetchOrders = new long[0];
+	private long[] prefetchItems = new long[0];
+	private Grouping grouping = Grouping.MEMORY;
+	private OrderGroup current;
+	private int completed;
+	private int unsorted;
+	private long memoryBudget = Consts.IMPORT_CONFIG_DEF_MEMORY_BUDGET * Consts.MEGABYTE;
+	private Path spillDirectory = Paths.get(System.getProperty(TMP_DIR));
+	private LongLongMap fingerprints;
+	private int responseBufferSize = Consts.RESPONSE_CONFIG_DEF_BUFFER_SIZE;
+	private boolean asyncResponse;
+	private ResponseFile.Format responseFormat = ResponseFile.Format.FULL;
+	private TailInputStream responseTail;
+	private ExternalGrouper grouper;
 	
 	/**
 	 * Constructor of CSVImporter
@@ -106,7 +192,8 @@ public class CSVImporter implements HasLogger{
 	public CSVImporter(String inputFileName, String responseFileName, EntityManager em) {
 		this.inputFileName = inputFileName;
 		this.responseFileName = responseFileName;
-		this.orders = new HashMap<>();
+		this.orders = new LongObjectMap<>();
+		this.itemIds = new LongHashSet();
 		this.entityManager = em;
 	}
 		
@@ -120,7 +207,7 @@ public class CSVImporter implements HasLogger{
 	}
 
 	/**
-	 * After a conversion it contains the number of error rows
+	 * After a conversion it contains the number of error rows, every line with an ERROR response record is counted
 	 *  
 	 * @return the errorRows
 	 */
@@ -138,46 +225,278 @@ public class CSVImporter implements HasLogger{
 	}
 
 	/**
-	 * Getting orders map for tests
+	 * After a conversion in EXTERNAL grouping mode it contains the number of rows spilled into run files
+	 * 
+	 * @return the spilledRows
+	 */
+	public long getSpilledRows() {
+		return this.grouper == null ? 0 : this.grouper.getSpilled();
+	}
+
+	/**
+	 * Getting orders map for tests, it is empty in SORTED and EXTERNAL grouping mode
 	 * 
-	 * @return Map of orders
+	 * @return Map of the canonical orders and their items
 	 */
 	public Map<Order, List<OrderItem>> getOrders() {
-		return this.orders;
+		Map<Order, List<OrderItem>> result = new LinkedHashMap<>();
+		for (OrderGroup group : this.orders)
+			result.put(group.getOrder(), group.getItems());
+		return result;
+	}
+	
+	/**
+	 * Setting the number of validation threads.
+	 * 
+	 * <p>1 means the sequential streaming reader, more than 1 switches to the parallel reader which maps 
+	 * the input file into memory. Both readers split the lines on the validation threads. 0 or less means the number of available processors.</p>
+	 * 
+	 * @param threads number of validation threads
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setThreads(int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		return this;
+	}
+	
+	/**
+	 * Setting the size of a range for the parallel reader
+	 * 
+	 * A range is extended to the end of its last line, so a size smaller than a line makes a range of every line.
+	 * 
+	 * @param chunkSize size of a range in bytes
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+		return this;
+	}
+	
+	/**
+	 * Setting the size of transactions
+	 * 
+	 * <p>The transaction is committed and the persistence context is cleared after every commitSize new orders, 
+	 * so the memory of the EntityManager and the locks of the database are bounded. 0 or less means 
+	 * a single transaction for the whole file.</p>
+	 * 
+	 * @param commitSize number of orders in a transaction
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setCommitSize(int commitSize) {
+		this.commitSize = commitSize;
+		return this;
+	}
+	
+	/**
+	 * Setting the persistence backend
+	 * 
+	 * <p>JPA works with every database. COPY sends the rows with the COPY command of PostgreSQL, it falls back 
+	 * to JPA if the database is not PostgreSQL.</p>
+	 * 
+	 * @param backend persistence backend
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setBackend(OrderWriter.Backend backend) {
+		this.backend = backend;
+		return this;
+	}
+	
+	/**
+	 * Setting the strategy of the database checks of ids
+	 * 
+	 * <p>FIND checks the ids line by line. BATCH checks the ids of a batch of lines with IN queries before the lines
+	 * of the batch are processed. PRELOAD loads all ids of the database into memory before the import, it is the fastest
+	 * if the tables are smaller than the input.</p>
+	 * 
+	 * @param strategy strategy of id lookup
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setIdLookup(IdLookup.Strategy strategy) {
+		this.lookupStrategy = strategy;
+		return this;
+	}
+	
+	/**
+	 * Setting the grouping mode of the lines
+	 * 
+	 * <p>MEMORY writes an order at its first line and every item at its line, in transactions of commitSize orders, and 
+	 * keeps the order with its items until the end of the file, when only the total values of the orders are stored. The 
+	 * heap grows with the input, only the persistence context is bounded. SORTED trusts that the input is sorted by 
+	 * OrderId: when the OrderId changes, the completed order is written with its items and total value and it is 
+	 * dropped from memory, so the memory doesn't depend on the size of the input. A line with a smaller OrderId than 
+	 * the previous one violates the sort and it is reported as an error.</p>
+	 * 
+	 * <p>EXTERNAL collects the lines until the memory budget, then they are sorted by OrderId and spilled into run files. 
+	 * At the end the runs are merged and the orders are written in OrderId order like in SORTED mode, so nothing is 
+	 * persisted until the end of the file. Only the OrderIds with the fingerprint of their order data and the 
+	 * OrderItemIds are kept in memory for the checks of the lines.</p>
+	 * 
+	 * @param grouping grouping mode
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setGrouping(Grouping grouping) {
+		this.grouping = grouping;
+		return this;
+	}
+	
+	/**
+	 * Setting the memory budget of EXTERNAL grouping
+	 * 
+	 * @param bytes estimated heap size of the lines collected before a spill
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setMemoryBudget(long bytes) {
+		this.memoryBudget = bytes;
+		return this;
+	}
+	
+	/**
+	 * Setting the directory of the run files of EXTERNAL grouping
+	 * 
+	 * @param directory an existing directory, empty or null means the temporary directory of the system
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setSpillDirectory(String directory) {
+		this.spillDirectory = directory == null || directory.isEmpty() 
+				? Paths.get(System.getProperty(TMP_DIR)) 
+				: Paths.get(directory);
+		return this;
+	}
+	
+	/**
+	 * Setting the size of the buffer of the response file
+	 * 
+	 * @param size size of the buffer in characters
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setResponseBufferSize(int size) {
+		this.responseBufferSize = size;
+		return this;
+	}
+	
+	/**
+	 * Setting the asynchronous writing of the response file
+	 * 
+	 * <p>If it is true the full buffers of the response file are written on a writer thread, so the persistence stage
+	 * doesn't wait for the file.</p>
+	 * 
+	 * @param async true for asynchronous writing
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setAsyncResponse(boolean async) {
+		this.asyncResponse = async;
+		return this;
+	}
+	
+	/**
+	 * Setting the format of the response file
+	 * 
+	 * <p>In COMPACT format the consecutive OK lines are collapsed into range records and the file ends with the totals
+	 * of the import, so a mostly valid input gives a small response file.</p>
+	 * 
+	 * @param format format of the response file
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setResponseFormat(ResponseFile.Format format) {
+		this.responseFormat = format;
+		return this;
+	}
+	
+	/**
+	 * Setting a reader of the response file which follows the writing of the file
+	 * 
+	 * <p>The tail is opened after the response file is created and it is finished after the response file is closed,
+	 * so a consumer of the tail (e.g. the ftp upload) can run parallel with the import. If the import fails the tail 
+	 * is aborted.</p>
+	 * 
+	 * @param tail reader of the response file or null
+	 * @return reference to CSVImporter
+	 */
+	public CSVImporter setResponseTail(TailInputStream tail) {
+		this.responseTail = tail;
+		return this;
 	}
 	
 	/**
 	 * Starting process
 	 * 
+	 * <p>The import runs in a pipeline: the input is streamed by a reader thread, the lines are validated 
+	 * on a pool of worker threads and the valid Order/OrderItem pairs are checked and grouped on the caller 
+	 * thread in input order. The stages are connected with bounded queues, so the memory of the reader doesn't depend 
+	 * on the size of the input file.</p>
+	 * 
+	 * <p>In MEMORY and SORTED grouping mode the orders and items are persisted on the caller thread while the file is 
+	 * read, in EXTERNAL mode they are persisted after the end of the file, see setGrouping().</p>
+	 * 
 	 * @return true if the conversion finished successfully or flase if something went wrong
 	 */
 	public boolean process() {
-		try (Reader in = new FileReader(this.inputFileName)) {
-			try (ResponseFile r = new ResponseFile(this.responseFileName)) {
+		boolean result = false;
+		try {
+			result = importFile();
+			return result;
+		}
+		finally {
+			if (this.responseTail != null) {
+				if (result)
+					this.responseTail.finish();
+				else
+					this.responseTail.abort("Import of "+this.inputFileName+" failed, the response file is incomplete"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+	
+	/**
+	 * Running the import
+	 * 
+	 * @return true if the conversion finished successfully
+	 */
+	private boolean importFile() {
+		this.writer = createWriter();
+		this.idLookup = createIdLookup();
+		MemoCache<String, Boolean> emails = OrderBuilder.getEmailCache();
+		long emailHits = emails.getHits();
+		long emailMisses = emails.getMisses();
+		if (this.grouping == Grouping.EXTERNAL) {
+			this.fingerprints = new LongLongMap();
+			this.grouper = new ExternalGrouper(this.memoryBudget, this.spillDirectory);
+		}
+		try (FileChannel in = FileChannel.open(Paths.get(this.inputFileName), StandardOpenOption.READ)) {
+			try (ResponseFile r = new ResponseFile(this.responseFileName, this.responseBufferSize, this.asyncResponse, this.responseFormat)) {
 				r.open();
+				if (this.responseTail != null)
+					this.responseTail.open();
 				
 				this.response = r;
 				
-				try (CSVParser csvFileParser = new CSVParser(in, CSV_FILE_FORMAT) ) {						
-					for (CSVRecord record : csvFileParser.getRecords()) {							
-						++this.lines;
-						
-						int lineNumber=this.lines;
-						try {
-							lineNumber = Integer.parseInt(record.get(LINE_NUMBER));
-						}
-						catch (NumberFormatException e) {
-							this.response.message(this.lines, ResponseFile.Status.ERROR, "Linenumber format error"+e.getMessage());  //$NON-NLS-1$
-						}
-						processLine(record, lineNumber);
-						System.out.print(String.format("\r%10d.", Integer.valueOf(lineNumber))); //$NON-NLS-1$
-					}
-				}
+				ImportPipeline.Source source = this.threads > 1 
+						? new ChunkReader(in, this.chunkSize, this::validate, this::validate)
+						: new RecordReader(in, this::validate, this::validate);
+				
+				this.writer.begin();
+				new ImportPipeline(this.threads).run(source, this::accept);
+				
 				System.out.println();
 				saveLines();
+				r.trailer(this.lines, this.validRows, this.errorRows);
+				getLogger().info("Email validation cache: {} hits, {} misses", Long.valueOf(emails.getHits() - emailHits),  //$NON-NLS-1$
+						Long.valueOf(emails.getMisses() - emailMisses));
 				return true;
 			}
+			catch (PersistenceException e) {
+				this.writer.rollback();
+				getLogger().error("Database error:"+e.getMessage()); //$NON-NLS-1$
+				System.out.print("\rSomething went wrong, details in log\n"); //$NON-NLS-1$
+				return false;
+			}
+			catch (UncheckedIOException e) {
+				this.writer.rollback();
+				getLogger().error(e.getMessage());
+				System.out.print("\rSomething went wrong, details in log\n"); //$NON-NLS-1$
+				return false;
+			}
 			catch (Exception e) { // response
+				this.writer.rollback();
 				getLogger().error(String.format("Cannot open response file %s : %s ",this.responseFileName, e.getMessage())); //$NON-NLS-1$
 				System.out.print("\rSomething went wrong, details in log\n"); //$NON-NLS-1$
 				return false;
@@ -187,12 +506,19 @@ public class CSVImporter implements HasLogger{
 			getLogger().error(String.format("Cannot open input file %s: %s", this.inputFileName,e.getMessage())); //$NON-NLS-1$
 			System.out.print("\rSomething went wrong, details in log\n"); //$NON-NLS-1$
 			return false;
-		}			
+		}
+		finally {
+			if (this.grouper != null)
+				this.grouper.close();
+		}
 	}
 
 	/**
 	 * Checking an Order and OrderItem in the Database.
 	 * 
+	 * <p>Orders and items persisted by this import are not checked in the database. A line with an OrderId of this import
+	 * and different order data is reported as a conflict.</p>
+	 * 
 	 * @param order Order object
 	 * @param item OrderItem object
 	 * @param lineNumber LineNuumber for error messages
@@ -201,24 +527,31 @@ public class CSVImporter implements HasLogger{
 	 */
 	private boolean checkDb(Order order, OrderItem item, int lineNumber) throws IOException {
 		Long fid = order.getId();
+		boolean imported = isImported(fid.longValue());
 		
-		if (this.entityManager.find(Order.class, fid)!= null) {
-			this.response.message(lineNumber, ResponseFile.Status.ERROR, "OrderId already exists in database: "+fid); //$NON-NLS-1$
+		if (!imported && this.idLookup.orderExists(fid.longValue())) {
+			respond(lineNumber, ResponseFile.Status.ERROR, "OrderId already exists in database: "+fid); //$NON-NLS-1$
+			return false;
+		}
+		if (imported && conflicts(fid.longValue(), order)) {
+			respond(lineNumber, ResponseFile.Status.ERROR, "Order data conflicts with a previous line of OrderId: "+fid); //$NON-NLS-1$
 			return false;
 		}
 		fid = item.getId();
-		if (this.entityManager.find(OrderItem.class, fid)!=null) {
-			this.response.message(lineNumber, ResponseFile.Status.ERROR, "OrderItemId already exists in database: "+fid); //$NON-NLS-1$
+		if (!this.itemIds.contains(fid.longValue()) && this.idLookup.itemExists(fid.longValue())) {
+			respond(lineNumber, ResponseFile.Status.ERROR, "OrderItemId already exists in database: "+fid); //$NON-NLS-1$
 			return false;			
 		}
 		return true;
 	}
 
 	/**
-	 * Add an Order/OrderItem pair to the memory map.  
+	 * Add an Order/OrderItem pair to the memory map and persist them.  
 	 * 
-	 * if an Order isn't exists in the keyset of the map, it creates a new key with an OrderItem list
-	 * If an orderItem exists in the list of given Order, it doesn't append it and creates an error message
+	 * if the OrderId isn't exists in the map, the Order becomes the canonical Order of a new group. Otherwise the item 
+	 * is added to the group of the OrderId and it refers to the canonical Order.
+	 * If the OrderItemId is already imported under any OrderId, it doesn't append it and creates an error message. The ids 
+	 * of the import are kept in a primitive hash set, so the check doesn't depend on the number of items.
 	 * 
 	 * @param order Order object
 	 * @param orderItem OrderItem object
@@ -227,123 +560,423 @@ public class CSVImporter implements HasLogger{
 	 * @throws IOException if the error message makes a mistake
 	 */
 	private boolean addOrderItemPairs(Order order, OrderItem orderItem, int lineNumber) throws IOException {
-		if (this.orders.containsKey(order)) {
-			List<OrderItem> items = this.orders.get(order);
-			if (items.contains(orderItem)) {
-				this.response.message(lineNumber, ResponseFile.Status.ERROR, "Duplicate orderitem:"+orderItem); //$NON-NLS-1$
-				return false;
+		long id = order.getId().longValue();
+		OrderGroup group = group(id);
+		if (group != null)
+			orderItem.setOrder(group.getOrder());
+		if (this.itemIds.contains(orderItem.getId().longValue())) {
+			respond(lineNumber, ResponseFile.Status.ERROR, "Duplicate orderitem:"+orderItem); //$NON-NLS-1$
+			return false;
+		}
+		
+		if (this.grouping == Grouping.EXTERNAL) {
+			boolean first = !this.fingerprints.containsKey(id);
+			if (first)
+				this.fingerprints.put(id, OrderGroup.fingerprint(order));
+			this.itemIds.add(orderItem.getId().longValue());
+			try {
+				this.grouper.add(order, orderItem, first);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException("Cannot spill the lines:"+e.getMessage(), e); //$NON-NLS-1$
 			}
-			items.add(orderItem);
 			return true;
 		}
 		
-		List<OrderItem> items = new ArrayList<>();
-		items.add(orderItem);
-		this.orders.put(order, items);
+		if (group == null) 
+			group = newGroup(id, order);
+		
+		group.getItems().add(orderItem);
+		this.itemIds.add(orderItem.getId().longValue());
+		if (this.grouping == Grouping.MEMORY)
+			this.writer.item(orderItem);
 		return true;
 	}
 	
+	/**
+	 * Getting the group of an OrderId
+	 * 
+	 * @param id OrderId
+	 * @return the group of the OrderId or null if it is a new OrderId. In SORTED mode only the current group is checked,
+	 * in EXTERNAL mode the groups are not in memory.
+	 */
+	private OrderGroup group(long id) {
+		switch (this.grouping) {
+		case MEMORY : return this.orders.get(id);
+		case SORTED : return this.current != null && this.current.getOrder().getId().longValue() == id ? this.current : null;
+		default : return null;
+		}
+	}
+	
+	/**
+	 * Checking an OrderId of the import
+	 * 
+	 * @param id OrderId
+	 * @return true if a previous line of the import has the same OrderId
+	 */
+	private boolean isImported(long id) {
+		return this.grouping == Grouping.EXTERNAL ? this.fingerprints.containsKey(id) : group(id) != null;
+	}
+	
+	/**
+	 * Checking the order data of a line with an imported OrderId
+	 * 
+	 * @param id OrderId
+	 * @param order Order of the line
+	 * @return true if the order data is different from the first line of the OrderId
+	 */
+	private boolean conflicts(long id, Order order) {
+		if (this.grouping == Grouping.EXTERNAL)
+			return this.fingerprints.get(id, 0) != OrderGroup.fingerprint(order);
+		return group(id).conflicts(order);
+	}
+	
+	/**
+	 * Starting the group of a new OrderId
+	 * 
+	 * <p>In MEMORY mode the order is written without its total value and the group is stored in the map until the end 
+	 * of the file. In SORTED mode the previous group is completed and the new group becomes the current one.</p>
+	 * 
+	 * @param id OrderId
+	 * @param order canonical Order of the group
+	 * @return the new group
+	 */
+	private OrderGroup newGroup(long id, Order order) {
+		OrderGroup group = new OrderGroup(order);
+		if (this.grouping == Grouping.MEMORY) {
+			this.orders.put(id, group);
+			this.writer.order(order);
+		}
+		else {
+			complete();
+			this.current = group;
+		}
+		return group;
+	}
+	
+	/**
+	 * Writing the current group of SORTED mode and dropping it from memory
+	 */
+	private void complete() {
+		if (this.current == null)
+			return;
+		write(this.current);
+		this.current = null;
+	}
+	
+	/**
+	 * Writing a complete group with its total value
+	 * 
+	 * @param group group of an OrderId with all of its items
+	 */
+	private void write(OrderGroup group) {
+		this.writer.order(processOrder(group));
+		for (OrderItem item : group.getItems())
+			this.writer.item(item);
+		++this.completed;
+	}
+	
+	/**
+	 * Checking the sort of SORTED mode
+	 * 
+	 * @param order Order of a line
+	 * @return true if the OrderId of the line is not less than the OrderId of the current group
+	 */
+	private boolean isSorted(Order order) {
+		return this.grouping != Grouping.SORTED || this.current == null 
+				|| order.getId().longValue() >= this.current.getOrder().getId().longValue();
+	}
+	
 	/**
 	 * Try to create an Order/OrderItem object from the CSV. 
 	 * 
+	 * <p>It has no side effects, so it can be called from parser threads. The builders are lenient, so an invalid field 
+	 * doesn't throw an exception.</p>
+	 * 
 	 * @param record CSV line as a Record
-	 * @param lineNumber LineNumber 
+	 * @return result of the validation
 	 */
-	private void processLine(CSVRecord record, int lineNumber) {
+	private ImportLine validate(CSVRecord record) {
+		ImportLine line = new ImportLine(record.get(LINE_NUMBER));
 		try {
-			try {
-				OrderBuilder ob = new OrderBuilder()
-						.orderId(record.get(ORDER_ID))
-						.buyerName(record.get(BUYER_NAME))
-						.buyerEmail(record.get(BUYER_EMAIL))
-						.address(record.get(ADDRESS))
-						.postCode(record.get(POST_CODE))
-						.orderDate(record.get(ORDER_DATE));
-				
-				Optional<Order> ordr = ob.get();
-				if (!ordr.isPresent()) {
-					++this.errorRows;
-					this.response.message(lineNumber, ResponseFile.Status.ERROR, "Order final test fail"); //$NON-NLS-1$
-					return;
-				}
-				OrderItemBuilder ib = new OrderItemBuilder();
-				ib.order(ordr.get())
-						.itemId(record.get(ORDER_ITEM_ID))
-						.salePrice(record.get(SALE_PRICE))
-						.shippingPrice(record.get(SHIPPING_PRICE))
-						.sku(record.get(SKU))
-						.status(record.get(STATUS));
-				Optional<OrderItem> it = ib.get();
-				if (!it.isPresent()) {
-					++this.errorRows;
-					this.response.message(lineNumber, ResponseFile.Status.ERROR, "item final test fail"); //$NON-NLS-1$
-					return;
-				}
-				
-				Order order = ordr.get();
-				OrderItem orderItem = it.get();
-				if (checkDb(order, orderItem, lineNumber) &&  
-					addOrderItemPairs(order, orderItem, lineNumber)) {
-					this.response.message(lineNumber, ResponseFile.Status.OK, ""); //$NON-NLS-1$
-					++this.validRows;
-				}
-			}
-			catch (ConvertException e) {
-				this.response.message(lineNumber, ResponseFile.Status.ERROR, e.getMessage());
-			}
+			OrderBuilder ob = new OrderBuilder().lenient()
+					.orderId(record.get(ORDER_ID))
+					.buyerName(record.get(BUYER_NAME))
+					.buyerEmail(record.get(BUYER_EMAIL))
+					.address(record.get(ADDRESS))
+					.postCode(record.get(POST_CODE))
+					.orderDate(record.get(ORDER_DATE));
+			
+			if (ob.getError() != null)
+				return line.error(ob.getError().getMessage());
+			
+			Optional<Order> ordr = ob.get();
+			if (!ordr.isPresent()) 
+				return line.error("Order final test fail"); //$NON-NLS-1$
+			
+			OrderItemBuilder ib = new OrderItemBuilder().lenient();
+			ib.order(ordr.get())
+					.itemId(record.get(ORDER_ITEM_ID))
+					.salePrice(record.get(SALE_PRICE))
+					.shippingPrice(record.get(SHIPPING_PRICE))
+					.sku(record.get(SKU))
+					.status(record.get(STATUS));
+			if (ib.getError() != null)
+				return line.error(ib.getError().getMessage());
+			
+			Optional<OrderItem> it = ib.get();
+			if (!it.isPresent()) 
+				return line.error("item final test fail"); //$NON-NLS-1$
+			
+			return line.valid(ordr.get(), it.get());
+		}
+		catch (ConvertException e) {
+			return line.error(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Try to create an Order/OrderItem object from the fields of a simple line.
+	 * 
+	 * <p>Numbers, dates and status are parsed directly from the bytes of the input. It has no side effects, 
+	 * so it can be called from parser threads.</p>
+	 * 
+	 * @param t tokenizer positioned on a simple line
+	 * @return result of the validation
+	 */
+	private ImportLine validate(LineTokenizer t) {
+		ByteBuffer buf = t.buffer();
+		ImportLine line = ByteParser.isInt(buf, t.start(IDX_LINE_NUMBER), t.end(IDX_LINE_NUMBER))
+				? new ImportLine(ByteParser.parseInt(buf, t.start(IDX_LINE_NUMBER), t.end(IDX_LINE_NUMBER)))
+				: new ImportLine(t.string(IDX_LINE_NUMBER));
+		try {
+			OrderBuilder ob = new OrderBuilder().lenient()
+					.orderId(buf, t.start(IDX_ORDER_ID), t.end(IDX_ORDER_ID))
+					.buyerName(t.string(IDX_BUYER_NAME))
+					.buyerEmail(t.string(IDX_BUYER_EMAIL))
+					.address(t.string(IDX_ADDRESS))
+					.postCode(buf, t.start(IDX_POST_CODE), t.end(IDX_POST_CODE))
+					.orderDate(buf, t.start(IDX_ORDER_DATE), t.end(IDX_ORDER_DATE));
+			
+			if (ob.getError() != null)
+				return line.error(ob.getError().getMessage());
+			
+			Optional<Order> ordr = ob.get();
+			if (!ordr.isPresent()) 
+				return line.error("Order final test fail"); //$NON-NLS-1$
+			
+			OrderItemBuilder ib = new OrderItemBuilder().lenient();
+			ib.order(ordr.get())
+					.itemId(buf, t.start(IDX_ORDER_ITEM_ID), t.end(IDX_ORDER_ITEM_ID))
+					.salePrice(buf, t.start(IDX_SALE_PRICE), t.end(IDX_SALE_PRICE))
+					.shippingPrice(buf, t.start(IDX_SHIPPING_PRICE), t.end(IDX_SHIPPING_PRICE))
+					.sku(t.string(IDX_SKU))
+					.status(buf, t.start(IDX_STATUS), t.end(IDX_STATUS));
+			if (ib.getError() != null)
+				return line.error(ib.getError().getMessage());
+			
+			Optional<OrderItem> it = ib.get();
+			if (!it.isPresent()) 
+				return line.error("item final test fail"); //$NON-NLS-1$
+			
+			return line.valid(ordr.get(), it.get());
+		}
+		catch (ConvertException e) {
+			return line.error(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Applying a validated batch in input order.
+	 * 
+	 * <p>Ids of the valid lines which are not imported yet are prefetched by the id lookup before the lines are applied.</p>
+	 * 
+	 * @param batch validated lines
+	 */
+	private void accept(List<ImportLine> batch) {
+		if (this.prefetchOrders.length < batch.size()) {
+			this.prefetchOrders = new long[batch.size()];
+			this.prefetchItems = new long[batch.size()];
+		}
+		int orderCount = 0;
+		int itemCount = 0;
+		for (ImportLine line : batch) {
+			if (line.getError() != null)
+				continue;
+			long oid = line.getOrder().getId().longValue();
+			if (!isImported(oid))
+				this.prefetchOrders[orderCount++] = oid;
+			long iid = line.getItem().getId().longValue();
+			if (!this.itemIds.contains(iid))
+				this.prefetchItems[itemCount++] = iid;
+		}
+		this.idLookup.prefetch(this.prefetchOrders, orderCount, this.prefetchItems, itemCount);
+		
+		for (ImportLine line : batch)
+			accept(line);
+	}
+	
+	/**
+	 * Applying a validated line in input order: database checks, grouping and response message
+	 * 
+	 * @param line result of the validation
+	 */
+	private void accept(ImportLine line) {
+		++this.lines;
+		int lineNumber = this.lines;
+		this.failed = false;
+		try {
+			if (line.getLineNumberError() != null)
+				respond(this.lines, ResponseFile.Status.ERROR, "Linenumber format error"+line.getLineNumberError());  //$NON-NLS-1$
+			else
+				lineNumber = line.getLineNumber();
+			
+			processLine(line, lineNumber);
 		}
 		catch (IOException e) {
 			getLogger().error("processLine error:"+e.getMessage()); //$NON-NLS-1$
 		}
+		if (this.failed)
+			++this.errorRows;
+		System.out.print(String.format("\r%10d.", Integer.valueOf(lineNumber))); //$NON-NLS-1$
 	}
 	
 	/**
-	 * Save all processed Order/OrderItem objects to the database
+	 * Storing a validated Order/OrderItem pair or writing the error of the line 
+	 * 
+	 * @param line result of the validation
+	 * @param lineNumber LineNumber 
+	 * @throws IOException if the response message makes a mistake
 	 */
-	private void saveLines() {
-		if (this.orders.isEmpty()) {
-			getLogger().warn("Orders list is empty!"); //$NON-NLS-1$
+	private void processLine(ImportLine line, int lineNumber) throws IOException {
+		if (line.getError() != null) {
+			respond(lineNumber, ResponseFile.Status.ERROR, line.getError());
 			return;
 		}
 		
-		this.entityManager.setFlushMode(FlushModeType.COMMIT);
-		EntityTransaction tr = this.entityManager.getTransaction();
+		Order order = line.getOrder();
+		OrderItem orderItem = line.getItem();
+		if (!isSorted(order)) {
+			++this.unsorted;
+			respond(lineNumber, ResponseFile.Status.ERROR, "OrderId is not sorted: "+order.getId()+ //$NON-NLS-1$
+					" is after OrderId: "+this.current.getOrder().getId()); //$NON-NLS-1$
+			return;
+		}
+		if (checkDb(order, orderItem, lineNumber) &&  
+			addOrderItemPairs(order, orderItem, lineNumber)) {
+			respond(lineNumber, ResponseFile.Status.OK, ""); //$NON-NLS-1$
+			++this.validRows;
+		}
+	}
+	
+	/**
+	 * Writing a response record
+	 * 
+	 * <p>It is called only on the persistence thread and the pipeline gives the lines in input order, so the records
+	 * are written directly in input order. An ERROR record marks the current line as an error line.</p>
+	 * 
+	 * @param lineNumber LineNumber of the record
+	 * @param status status of the line
+	 * @param message message of the line
+	 * @throws IOException if the response file cannot be written
+	 */
+	private void respond(int lineNumber, ResponseFile.Status status, String message) throws IOException {
+		if (status == ResponseFile.Status.ERROR)
+			this.failed = true;
+		this.response.message(lineNumber, status, message);
+	}
+	
+	/**
+	 * Getting the progress of the response file
+	 * 
+	 * @return number of response records written to the file, the buffered records are not counted. It can be called 
+	 * from any thread.
+	 */
+	public long getResponseWatermark() {
+		ResponseFile r = this.response;
+		return r == null ? 0 : r.getWritten();
+	}
+	
+	/**
+	 * Creating the persistence backend of the import
+	 * 
+	 * @return writer of the selected backend or the JPA writer if the COPY backend cannot be used
+	 */
+	private OrderWriter createWriter() {
+		if (this.backend == OrderWriter.Backend.COPY) {
+			if (CopyOrderWriter.isSupported(this.entityManager))
+				return new CopyOrderWriter(this.entityManager, this.commitSize);
+			getLogger().warn("COPY backend needs PostgreSQL database, JPA backend is used"); //$NON-NLS-1$
+		}
+		return new JpaOrderWriter(this.entityManager, this.commitSize);
+	}
+	
+	/**
+	 * Creating the id lookup of the import
+	 * 
+	 * @return id lookup of the selected strategy
+	 */
+	private IdLookup createIdLookup() {
+		switch (this.lookupStrategy) {
+		case FIND : return new FindIdLookup(this.entityManager);
+		case PRELOAD : return new PreloadIdLookup(this.entityManager);
+		default : return new BatchIdLookup(this.entityManager);
+		}
+	}
+	
+	/**
+	 * Finishing the import. 
+	 * 
+	 * In MEMORY mode the orders and items are already written, only the total values of the orders are stored. In SORTED 
+	 * mode the last group is written, in EXTERNAL mode the spilled lines are merged and all groups are written with their 
+	 * total values. Then the writer commits the last transaction.
+	 */
+	private void saveLines() {
+		if (this.unsorted > 0)
+			getLogger().error("Input is not sorted by OrderId, {} lines are rejected", Integer.valueOf(this.unsorted)); //$NON-NLS-1$
 		
-		tr.begin();
 		try {
-			for (Map.Entry<Order, List<OrderItem>> entry : this.orders.entrySet() ) 
-				processOrder(entry);
-			
-			tr.commit();			
+			switch (this.grouping) {
+			case SORTED : 
+				complete(); 
+				break;
+			case EXTERNAL : 
+				this.grouper.finish(this::write); 
+				break;
+			default :
+				for (OrderGroup group : this.orders) {
+					this.writer.total(processOrder(group));
+					++this.completed;
+				}
+			}
+			if (this.completed == 0)
+				getLogger().warn("Orders list is empty!"); //$NON-NLS-1$
+			this.writer.finish();
+		}
+		catch (IOException e) {
+			this.writer.rollback();
+			getLogger().error("Cannot merge the spilled lines:"+e.getMessage()); //$NON-NLS-1$
 		}
 		catch (Exception e) {
-			tr.rollback();
+			this.writer.rollback();
 			getLogger().error("Database error:"+e.getMessage()); //$NON-NLS-1$
 		}
 	}
 	
 	/**
-	 * Save an Order/OrderItem+ objects to the database
+	 * Calculating the total value of an Order, it is exact in cents
 	 *  
-	 * @param entry Map entry to save (Order/OrderItems+)
+	 * @param group group to save (Order/OrderItems+)
+	 * @return the canonical Order of the group
 	 */
-	private void processOrder(Map.Entry<Order, List<OrderItem>> entry) {
-		float total = 0;
-		Order order = entry.getKey();
+	private static Order processOrder(OrderGroup group) {
+		long total = 0;
 		
-		for(OrderItem i:entry.getValue())
+		for(OrderItem i:group.getItems())
 			total += i.getTotalItemPrice();
 		
-		order.setOrderTotalValue(total);
-	
-		this.entityManager.persist(order);
-		
-		for(OrderItem i:entry.getValue()) {
-			i.setOrder(order);
-			this.entityManager.persist(i);
-		}
-			
-		this.entityManager.flush();		
+		group.getOrder().setOrderTotalValue(total);
+		return group.getOrder();
 	}
 	
 }
@@ -0,0 +1,179 @@
+package com.zamek.wob.csv;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import com.zamek.wob.Consts;
+import com.zamek.wob.util.HasLogger;
+
+/**
+ * Memory mapped reader stage of the import pipeline.
+ *
+ * <p>The file is memory mapped and split into byte ranges. Every range ends on a record separator, so
+ * the ranges can be parsed and validated independently on the workers of the pipeline. The pipeline keeps
+ * the order of the ranges, so the persistence stage gets the lines in the same order as with the
+ * sequential reader.</p>
+ *
+ * <p>Lines are split into fields on the bytes by LineTokenizer if the header of the file is the same as 
+ * CSVImporter.HEADER. Lines with quotes or unexpected number of fields, and files with other headers are 
+ * parsed by commons-csv.</p>
+ *
+ * <p>Fields must not contain the record separator, even in quoted form, because the split doesn't parse
+ * quotes.</p>
+ *
+ * <p>The input is decoded as UTF-8, malformed bytes are replaced with U+FFFD.</p>
+ *
+ * @author zamek
+ *
+ */
+class ChunkReader implements ImportPipeline.Source, HasLogger {
+
+	@SuppressWarnings("unused")
+	private final static boolean DEBUG = true;
+
+	private final static byte SEPARATOR = (byte) Consts.RECORD_SEPARATOR.charAt(0);
+
+	private final static int SCAN_BUFFER_SIZE = 8192;
+
+	/**
+	 * Upper limit of a range, a mapped region cannot be larger than 2GB
+	 */
+	private final static int MAX_CHUNK_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final int chunkSize;
+	private final Function<CSVRecord, ImportLine> validator;
+	private final Function<LineTokenizer, ImportLine> fieldValidator;
+
+	/**
+	 * Constructor of ChunkReader
+	 *
+	 * @param channel opened input file
+	 * @param chunkSize preferred size of a range in bytes, a range is extended to the end of its last line
+	 * @param validator converts a record to an ImportLine, it is called from the worker threads
+	 * @param fieldValidator converts a simple tokenized line to an ImportLine, it is called from the worker threads
+	 */
+	ChunkReader(FileChannel channel, int chunkSize, Function<CSVRecord, ImportLine> validator, Function<LineTokenizer, ImportLine> fieldValidator) {
+		this.channel = channel;
+		this.chunkSize = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+		this.validator = validator;
+		this.fieldValidator = fieldValidator;
+	}
+
+	@Override
+	public void read(ImportPipeline.Stage stage) throws IOException, InterruptedException {
+		long size = this.channel.size();
+		long position = nextBoundary(0, size);
+		if (position == 0)
+			return;
+
+		String[] header = readHeader(position);
+		CSVFormat format = CSVImporter.CSV_FILE_FORMAT.withHeader(header).withSkipHeaderRecord(false);
+		Function<LineTokenizer, ImportLine> tokenized = Arrays.equals(header, CSVImporter.HEADER) ? this.fieldValidator : null;
+		while (position < size) {
+			long end = nextBoundary(position + this.chunkSize, size);
+			ByteBuffer chunk = this.channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+			stage.submit(() -> parse(chunk, format, this.validator, tokenized));
+			position = end;
+		}
+	}
+
+	/**
+	 * Parsing the first line of file as header
+	 *
+	 * @param end end of the header line
+	 * @return names of columns
+	 * @throws IOException if the header cannot be read
+	 */
+	private String[] readHeader(long end) throws IOException {
+		return header(StandardCharsets.UTF_8.decode(this.channel.map(FileChannel.MapMode.READ_ONLY, 0, end)).toString());
+	}
+
+	/**
+	 * Parsing a header line
+	 *
+	 * @param line first line of file
+	 * @return names of columns
+	 * @throws IOException if the header cannot be parsed
+	 */
+	static String[] header(String line) throws IOException {
+		try (CSVParser parser = CSVParser.parse(line, CSVFormat.DEFAULT.withDelimiter(Consts.FIELD_DELIMITER))) {
+			List<String> names = new ArrayList<>();
+			for (CSVRecord record : parser)
+				record.forEach(names::add);
+			return names.toArray(new String[names.size()]);
+		}
+	}
+
+	/**
+	 * Searching the first position after a record separator
+	 *
+	 * @param from start position of search
+	 * @param size size of the file
+	 * @return position after the next record separator or size of the file if there is no more separator
+	 * @throws IOException if the file cannot be read
+	 */
+	private long nextBoundary(long from, long size) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		long position = from;
+		while (position < size) {
+			buf.clear();
+			int n = this.channel.read(buf, position);
+			if (n <= 0)
+				break;
+			for (int i = 0; i < n; ++i)
+				if (buf.get(i) == SEPARATOR)
+					return position + i + 1;
+			position += n;
+		}
+		return size;
+	}
+
+	/**
+	 * Parsing and validating a range, it runs on a pool thread
+	 *
+	 * @param chunk range of the file, it ends on a record separator
+	 * @param format csv format with the header of the file
+	 * @param validator line validator for commons-csv records
+	 * @param fieldValidator line validator for simple tokenized lines or null if the tokenizer cannot be used
+	 * @return validated lines of the range in input order
+	 * @throws IOException if the range cannot be parsed
+	 */
+	static List<ImportLine> parse(ByteBuffer chunk, CSVFormat format, Function<CSVRecord, ImportLine> validator, 
+											Function<LineTokenizer, ImportLine> fieldValidator) throws IOException {
+		List<ImportLine> lines = new ArrayList<>();
+		if (fieldValidator == null) {
+			CharBuffer cb = StandardCharsets.UTF_8.decode(chunk);
+			try (CSVParser parser = new CSVParser(new CharArrayReader(cb.array(), cb.arrayOffset() + cb.position(), cb.remaining()), format)) {
+				for (CSVRecord record : parser)
+					lines.add(validator.apply(record));
+			}
+			return lines;
+		}
+		
+		LineTokenizer tokenizer = new LineTokenizer(chunk);
+		while (tokenizer.next()) {
+			if (tokenizer.isSimple()) {
+				lines.add(fieldValidator.apply(tokenizer));
+				continue;
+			}
+			try (CSVParser parser = CSVParser.parse(tokenizer.line(), format)) {
+				for (CSVRecord record : parser)
+					lines.add(validator.apply(record));
+			}
+		}
+		return lines;
+	}
+}
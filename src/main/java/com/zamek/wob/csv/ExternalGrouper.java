@@ -0,0 +1,353 @@
+package com.zamek.wob.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+import com.zamek.wob.domain.orderitem.OrderItemStatus;
+import com.zamek.wob.util.HasLogger;
+
+/**
+ * Grouping of unsorted lines by OrderId with a memory budget.
+ *
+ * <p>The valid lines are collected in memory until their estimated size exceeds the budget. Then the collected lines
+ * are sorted by OrderId and they are spilled into a run file in a compact binary form. At the end the runs are merged
+ * by OrderId with a k-way merge, so the groups are produced in OrderId order and only one group and the read buffers
+ * of the runs are in memory. If nothing was spilled the lines are grouped in memory.</p>
+ *
+ * <p>Lines of an OrderId keep their input order, the sort is stable and the runs are written in input order. The order
+ * data is stored only with the first line of an OrderId, it becomes the canonical Order of the group.</p>
+ *
+ * @author zamek
+ *
+ */
+final class ExternalGrouper implements Closeable, HasLogger {
+
+	@SuppressWarnings("unused")
+	private final static boolean DEBUG = true;
+
+	private final static String RUN_PREFIX = "wob-run-"; //$NON-NLS-1$
+	private final static String RUN_SUFFIX = ".bin"; //$NON-NLS-1$
+
+	/**
+	 * Estimated heap size of a line without its Strings: entry, OrderItem, boxed id and list slot
+	 */
+	private final static int LINE_BYTES = 120;
+
+	/**
+	 * Estimated heap size of an Order without its Strings
+	 */
+	private final static int ORDER_BYTES = 100;
+
+	/**
+	 * Estimated heap size of a String without its characters
+	 */
+	private final static int STRING_BYTES = 40;
+
+	private final static int MIN_BUFFER_SIZE = 4 * 1024;
+	private final static int MAX_BUFFER_SIZE = 64 * 1024;
+
+	private final static int NULL_STATUS = -1;
+
+	private final static OrderItemStatus[] STATUSES = OrderItemStatus.values();
+
+	private final static Comparator<Line> BY_ORDER_ID = Comparator.comparingLong(l -> l.orderId);
+
+	/**
+	 * A line waiting for the grouping
+	 */
+	private final static class Line {
+		final long orderId;
+		final Order order;
+		final OrderItem item;
+
+		Line(long orderId, Order order, OrderItem item) {
+			this.orderId = orderId;
+			this.order = order;
+			this.item = item;
+		}
+	}
+
+	/**
+	 * A run file on disk
+	 */
+	private final static class Run {
+		final Path path;
+		final int lines;
+
+		Run(Path path, int lines) {
+			this.path = path;
+			this.lines = lines;
+		}
+	}
+
+	/**
+	 * Reader of a run in the merge, it holds the next line of the run
+	 */
+	private final static class RunReader implements Closeable {
+		final int index;
+		final DataInputStream in;
+		int remaining;
+		Line head;
+
+		RunReader(int index, Run run, int bufferSize) throws IOException {
+			this.index = index;
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), bufferSize));
+			this.remaining = run.lines;
+		}
+
+		/**
+		 * Reading the next line
+		 *
+		 * @return false at the end of the run
+		 * @throws IOException if the run cannot be read
+		 */
+		boolean next() throws IOException {
+			if (this.remaining == 0) {
+				this.head = null;
+				return false;
+			}
+			--this.remaining;
+			this.head = read(this.in);
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+
+	private final long budget;
+	private final Path directory;
+	private final List<Line> lines;
+	private final List<Run> runs;
+	private long size;
+	private long spilled;
+
+	/**
+	 * Constructor of ExternalGrouper
+	 *
+	 * @param budget estimated heap size of the collected lines in bytes
+	 * @param directory directory of the run files
+	 */
+	ExternalGrouper(long budget, Path directory) {
+		this.budget = budget;
+		this.directory = directory;
+		this.lines = new ArrayList<>();
+		this.runs = new ArrayList<>();
+	}
+
+	/**
+	 * Adding a valid line in input order
+	 *
+	 * @param order Order of the line, it is stored only if it is the first line of the OrderId
+	 * @param item OrderItem of the line
+	 * @param first true if it is the first line of the OrderId
+	 * @throws IOException if the run cannot be written
+	 */
+	void add(Order order, OrderItem item, boolean first) throws IOException {
+		item.setOrder(null);
+		this.lines.add(new Line(order.getId().longValue(), first ? order : null, item));
+		this.size += LINE_BYTES + size(item.getSKU());
+		if (first)
+			this.size += ORDER_BYTES + size(order.getBuyerName()) + size(order.getBuyerEmail()) + size(order.getAddress());
+		if (this.size > this.budget)
+			spill();
+	}
+
+	/**
+	 * @return number of spilled lines
+	 */
+	long getSpilled() {
+		return this.spilled;
+	}
+
+	/**
+	 * @return number of run files
+	 */
+	int getRuns() {
+		return this.runs.size();
+	}
+
+	/**
+	 * Producing the groups in OrderId order
+	 *
+	 * @param sink receives the complete groups
+	 * @throws IOException if a run cannot be written or read
+	 */
+	void finish(Consumer<OrderGroup> sink) throws IOException {
+		if (this.runs.isEmpty()) {
+			this.lines.sort(BY_ORDER_ID);
+			OrderGroup group = null;
+			for (Line line : this.lines)
+				group = append(group, line, sink);
+			this.lines.clear();
+			if (group != null)
+				sink.accept(group);
+			return;
+		}
+
+		spill();
+		getLogger().info("Merging {} runs of {} lines", Integer.valueOf(this.runs.size()), Long.valueOf(this.spilled)); //$NON-NLS-1$
+		int bufferSize = (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, this.budget / this.runs.size()));
+		PriorityQueue<RunReader> heap = new PriorityQueue<>(this.runs.size(),
+				Comparator.<RunReader>comparingLong(r -> r.head.orderId).thenComparingInt(r -> r.index));
+		List<RunReader> readers = new ArrayList<>(this.runs.size());
+		try {
+			for (int i = 0; i < this.runs.size(); ++i) {
+				RunReader reader = new RunReader(i, this.runs.get(i), bufferSize);
+				readers.add(reader);
+				if (reader.next())
+					heap.add(reader);
+			}
+			OrderGroup group = null;
+			while (!heap.isEmpty()) {
+				RunReader reader = heap.poll();
+				group = append(group, reader.head, sink);
+				if (reader.next())
+					heap.add(reader);
+			}
+			if (group != null)
+				sink.accept(group);
+		}
+		finally {
+			for (RunReader reader : readers)
+				reader.close();
+		}
+	}
+
+	/**
+	 * Deleting the run files
+	 */
+	@Override
+	public void close() {
+		for (Run run : this.runs) {
+			try {
+				Files.deleteIfExists(run.path);
+			}
+			catch (IOException e) {
+				getLogger().warn("Cannot delete run file {}: {}", run.path, e.getMessage()); //$NON-NLS-1$
+			}
+		}
+		this.runs.clear();
+	}
+
+	/**
+	 * Appending a line to the current group or starting a new group
+	 *
+	 * @param group current group or null
+	 * @param line next line in OrderId order
+	 * @param sink receives the completed group
+	 * @return the group of the line
+	 */
+	private static OrderGroup append(OrderGroup group, Line line, Consumer<OrderGroup> sink) {
+		OrderGroup result = group;
+		if (result == null || result.getOrder().getId().longValue() != line.orderId) {
+			if (result != null)
+				sink.accept(result);
+			if (line.order == null)
+				throw new IllegalStateException("Missing order data of OrderId: "+line.orderId); //$NON-NLS-1$
+			result = new OrderGroup(line.order);
+		}
+		line.item.setOrder(result.getOrder());
+		result.getItems().add(line.item);
+		return result;
+	}
+
+	/**
+	 * Sorting the collected lines and writing them into a new run
+	 *
+	 * @throws IOException if the run cannot be written
+	 */
+	private void spill() throws IOException {
+		if (this.lines.isEmpty())
+			return;
+		this.lines.sort(BY_ORDER_ID);
+		Path path = Files.createTempFile(this.directory, RUN_PREFIX, RUN_SUFFIX);
+		this.runs.add(new Run(path, this.lines.size()));
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), MAX_BUFFER_SIZE))) {
+			for (Line line : this.lines)
+				write(out, line);
+		}
+		getLogger().debug("{} lines spilled into {}", Integer.valueOf(this.lines.size()), path); //$NON-NLS-1$
+		this.spilled += this.lines.size();
+		this.lines.clear();
+		this.size = 0;
+	}
+
+	private static void write(DataOutputStream out, Line line) throws IOException {
+		out.writeLong(line.orderId);
+		out.writeBoolean(line.order != null);
+		if (line.order != null) {
+			writeString(out, line.order.getBuyerName());
+			writeString(out, line.order.getBuyerEmail());
+			writeString(out, line.order.getAddress());
+			out.writeBoolean(line.order.getPostCode() != null);
+			if (line.order.getPostCode() != null)
+				out.writeInt(line.order.getPostCode().intValue());
+			out.writeBoolean(line.order.getOrderDate() != null);
+			if (line.order.getOrderDate() != null)
+				out.writeLong(line.order.getOrderDate().toEpochDay());
+		}
+		OrderItem item = line.item;
+		out.writeLong(item.getId().longValue());
+		out.writeLong(item.getSalePrice());
+		out.writeLong(item.getShippingPrice());
+		out.writeLong(item.getTotalItemPrice());
+		writeString(out, item.getSKU());
+		out.writeByte(item.getStatus() == null ? NULL_STATUS : item.getStatus().ordinal());
+	}
+
+	private static Line read(DataInputStream in) throws IOException {
+		long orderId = in.readLong();
+		Order order = null;
+		if (in.readBoolean()) {
+			order = new Order();
+			order.setId(Long.valueOf(orderId));
+			order.setBuyerName(readString(in));
+			order.setBuyerEmail(readString(in));
+			order.setAddress(readString(in));
+			if (in.readBoolean())
+				order.setPostCode(Integer.valueOf(in.readInt()));
+			if (in.readBoolean())
+				order.setOrderDate(LocalDate.ofEpochDay(in.readLong()));
+		}
+		OrderItem item = new OrderItem();
+		item.setId(Long.valueOf(in.readLong()));
+		item.setSalePrice(in.readLong());
+		item.setShippingPrice(in.readLong());
+		item.setTotalItemPrice(in.readLong());
+		item.setSKU(readString(in));
+		byte status = in.readByte();
+		item.setStatus(status == NULL_STATUS ? null : STATUSES[status]);
+		return new Line(orderId, order, item);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null)
+			out.writeUTF(s);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static long size(String s) {
+		return s == null ? 0 : STRING_BYTES + 2L * s.length();
+	}
+}
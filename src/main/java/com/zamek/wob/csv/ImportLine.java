@@ -0,0 +1,104 @@
+package com.zamek.wob.csv;
+
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+
+/**
+ * Result of the validation of one input line.
+ *
+ * <p>Validation has no side effects, so it can run on any thread. The importer applies the results
+ * (database checks, grouping and response messages) in input order.</p>
+ *
+ * @author zamek
+ *
+ */
+final class ImportLine {
+
+	private int lineNumber;
+	private String lineNumberError;
+	private Order order;
+	private OrderItem item;
+	private String error;
+
+	/**
+	 * Constructor of ImportLine
+	 *
+	 * @param lineNumber LineNumber field from the CSV
+	 */
+	ImportLine(String lineNumber) {
+		try {
+			this.lineNumber = Integer.parseInt(lineNumber);
+		}
+		catch (NumberFormatException e) {
+			this.lineNumberError = e.getMessage();
+		}
+	}
+
+	/**
+	 * Constructor of ImportLine
+	 *
+	 * @param lineNumber parsed LineNumber field
+	 */
+	ImportLine(int lineNumber) {
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * Line is valid
+	 *
+	 * @param o validated Order
+	 * @param i validated OrderItem
+	 * @return reference to ImportLine
+	 */
+	ImportLine valid(Order o, OrderItem i) {
+		this.order = o;
+		this.item = i;
+		return this;
+	}
+
+	/**
+	 * A field of the line cannot be converted
+	 *
+	 * @param message reason of the error
+	 * @return reference to ImportLine
+	 */
+	ImportLine error(String message) {
+		this.error = message;
+		return this;
+	}
+
+	/**
+	 * @return the lineNumber, it is valid only if getLineNumberError() is null
+	 */
+	int getLineNumber() {
+		return this.lineNumber;
+	}
+
+	/**
+	 * @return the error message of LineNumber conversion or null if it is correct
+	 */
+	String getLineNumberError() {
+		return this.lineNumberError;
+	}
+
+	/**
+	 * @return the order or null if the line is not valid
+	 */
+	Order getOrder() {
+		return this.order;
+	}
+
+	/**
+	 * @return the item or null if the line is not valid
+	 */
+	OrderItem getItem() {
+		return this.item;
+	}
+
+	/**
+	 * @return the error message or null if the line is valid
+	 */
+	String getError() {
+		return this.error;
+	}
+}
@@ -0,0 +1,133 @@
+package com.zamek.wob.csv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.zamek.wob.util.HasLogger;
+
+/**
+ * Three stage import pipeline: read, validate, persist.
+ *
+ * <ul>
+ * <li>The reader stage runs on its own thread and splits the input into batches of lines.</li>
+ * <li>The batches are validated on a pool of worker threads.</li>
+ * <li>The validated batches are handed over to the persistence stage on the caller thread in input order.</li>
+ * </ul>
+ *
+ * <p>The stages are connected with a bounded queue of the batches, so a slow stage holds back the stages before it
+ * and the memory usage doesn't depend on the size of the input.</p>
+ *
+ * @author zamek
+ *
+ */
+class ImportPipeline implements HasLogger {
+
+	@SuppressWarnings("unused")
+	private final static boolean DEBUG = true;
+
+	/**
+	 * Reader stage of the pipeline
+	 */
+	interface Source {
+		/**
+		 * Reading the whole input
+		 *
+		 * @param stage receives the validation tasks of batches in input order
+		 * @throws IOException if the input cannot be read
+		 * @throws InterruptedException if the pipeline is stopped
+		 */
+		void read(Stage stage) throws IOException, InterruptedException;
+	}
+
+	/**
+	 * Entry point of the validation stage
+	 */
+	interface Stage {
+		/**
+		 * Submitting a batch for validation. It blocks if the queue is full.
+		 *
+		 * @param batch validation task of a batch, it returns the validated lines in input order
+		 * @throws InterruptedException if the pipeline is stopped
+		 */
+		void submit(Callable<List<ImportLine>> batch) throws InterruptedException;
+	}
+
+	private final static Future<List<ImportLine>> END = CompletableFuture.completedFuture(Collections.emptyList());
+
+	private final int workers;
+	private final BlockingQueue<Future<List<ImportLine>>> queue;
+	private volatile Exception failure;
+
+	/**
+	 * Constructor of ImportPipeline
+	 *
+	 * @param workers number of validation threads
+	 */
+	ImportPipeline(int workers) {
+		this.workers = Math.max(1, workers);
+		this.queue = new ArrayBlockingQueue<>(2 * this.workers);
+	}
+
+	/**
+	 * Running the pipeline
+	 *
+	 * @param source reader stage
+	 * @param sink persistence stage, it is called with the validated batches on the caller thread in input order
+	 * @throws IOException if the reader or the validation failed
+	 */
+	void run(Source source, Consumer<List<ImportLine>> sink) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+		Thread reader = new Thread(() -> read(source, pool), "csv-reader"); //$NON-NLS-1$
+		reader.start();
+		try {
+			for (Future<List<ImportLine>> batch = this.queue.take(); batch != END; batch = this.queue.take())
+				sink.accept(batch.get());
+
+			reader.join();
+			if (this.failure != null)
+				throw this.failure instanceof IOException
+					? (IOException) this.failure
+					: new IOException("Reading error:" + this.failure.getMessage(), this.failure); //$NON-NLS-1$
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Import interrupted"); //$NON-NLS-1$
+		}
+		catch (ExecutionException e) {
+			throw new IOException("Parsing error:" + e.getCause().getMessage(), e.getCause()); //$NON-NLS-1$
+		}
+		finally {
+			reader.interrupt();
+			pool.shutdownNow();
+		}
+	}
+
+	private void read(Source source, ExecutorService pool) {
+		try {
+			source.read(batch -> this.queue.put(pool.submit(batch)));
+		}
+		catch (@SuppressWarnings("unused") InterruptedException e) {
+			return;
+		}
+		catch (Exception e) {
+			this.failure = e;
+		}
+		try {
+			this.queue.put(END);
+		}
+		catch (@SuppressWarnings("unused") InterruptedException e) {
+			//NC persistence stage is stopped
+		}
+	}
+}
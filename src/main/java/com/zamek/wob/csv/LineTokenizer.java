@@ -0,0 +1,183 @@
+package com.zamek.wob.csv;
+
+import java.nio.ByteBuffer;
+
+import com.zamek.wob.Consts;
+import com.zamek.wob.util.ByteParser;
+
+/**
+ * Tokenizer of the fixed order format on UTF-8 bytes.
+ *
+ * <p>It splits a range of the input file into lines and the lines into fields by Consts.FIELD_DELIMITER.
+ * Fields are given as [start, end) offsets in the buffer, so the builders can parse numbers and dates
+ * without creating Strings.</p>
+ *
+ * <p>A line is simple if it has exactly as many fields as CSVImporter.HEADER and it doesn't contain quote.
+ * Other lines must be parsed by commons-csv.</p>
+ *
+ * <p>A record separator in a quoted field doesn't end the line, so a quoted multi-line record is given to 
+ * commons-csv as one line.</p>
+ *
+ * @author zamek
+ *
+ */
+final class LineTokenizer {
+
+	private final static byte DELIMITER = (byte) Consts.FIELD_DELIMITER;
+
+	private final static byte SEPARATOR = (byte) Consts.RECORD_SEPARATOR.charAt(0);
+
+	private final static byte CR = '\r';
+
+	private final static byte QUOTE = '"';
+
+	private final static int FIELDS = CSVImporter.HEADER.length;
+
+	private final ByteBuffer buf;
+	private final int[] starts = new int[FIELDS];
+	private final int[] ends = new int[FIELDS];
+	private int position;
+	private int lineStart;
+	private int lineEnd;
+	private boolean simple;
+	private boolean terminated;
+
+	/**
+	 * Constructor of LineTokenizer
+	 *
+	 * @param buf range of the input file, it must start at the beginning of a line
+	 */
+	LineTokenizer(ByteBuffer buf) {
+		this.buf = buf;
+		this.position = buf.position();
+	}
+
+	/**
+	 * Stepping to the next not empty line
+	 *
+	 * @return false if there are no more lines
+	 */
+	boolean next() {
+		int limit = this.buf.limit();
+		while (this.position < limit) {
+			this.lineStart = this.position;
+			int end = this.lineStart;
+			int field = 0;
+			int fieldStart = this.lineStart;
+			boolean quoted = false;
+			boolean inQuotes = false;
+			boolean closed = false;
+			while (end < limit) {
+				byte b = this.buf.get(end);
+				if (inQuotes) {
+					// the closing quote or the first one of an escaped pair, the second one opens again
+					if (b == QUOTE) {
+						inQuotes = false;
+						closed = true;
+					}
+					++end;
+					continue;
+				}
+				if (b == SEPARATOR)
+					break;
+				if (b == DELIMITER) {
+					if (field < FIELDS) {
+						this.starts[field] = fieldStart;
+						this.ends[field] = end;
+					}
+					++field;
+					fieldStart = end + 1;
+				}
+				else if (b == QUOTE) {
+					quoted = true;
+					inQuotes = end == fieldStart || closed;
+				}
+				closed = false;
+				++end;
+			}
+			this.terminated = end < limit;
+			this.position = this.terminated ? end + 1 : end;
+			if (end > this.lineStart && this.buf.get(end - 1) == CR)
+				--end;
+			if (end == this.lineStart)
+				continue;
+
+			if (field < FIELDS) {
+				this.starts[field] = fieldStart;
+				this.ends[field] = end;
+			}
+			this.lineEnd = end;
+			this.simple = !quoted && field == FIELDS - 1;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Searching the end of the last complete line of a range
+	 *
+	 * @param buf range of the input file, it must start at the beginning of a line
+	 * @return position after the record separator of the last complete line or the position of buf if there is 
+	 * 		no complete line in the range
+	 */
+	static int lastLineEnd(ByteBuffer buf) {
+		LineTokenizer tokenizer = new LineTokenizer(buf);
+		int end = buf.position();
+		while (tokenizer.next())
+			if (tokenizer.terminated)
+				end = tokenizer.position;
+		return end;
+	}
+
+	/**
+	 * @return position after the current line
+	 */
+	int position() {
+		return this.position;
+	}
+
+	/**
+	 * @return true if the current line can be processed by field offsets
+	 */
+	boolean isSimple() {
+		return this.simple;
+	}
+
+	/**
+	 * @return the buffer of fields
+	 */
+	ByteBuffer buffer() {
+		return this.buf;
+	}
+
+	/**
+	 * @param field index of field in CSVImporter.HEADER
+	 * @return offset of the first byte of field
+	 */
+	int start(int field) {
+		return this.starts[field];
+	}
+
+	/**
+	 * @param field index of field in CSVImporter.HEADER
+	 * @return offset after the last byte of field
+	 */
+	int end(int field) {
+		return this.ends[field];
+	}
+
+	/**
+	 * @param field index of field in CSVImporter.HEADER
+	 * @return decoded value of field
+	 */
+	String string(int field) {
+		return ByteParser.string(this.buf, this.starts[field], this.ends[field]);
+	}
+
+	/**
+	 * @return decoded current line for the commons-csv fallback
+	 */
+	String line() {
+		return ByteParser.string(this.buf, this.lineStart, this.lineEnd);
+	}
+}
@@ -0,0 +1,101 @@
+package com.zamek.wob.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+
+/**
+ * Items of an OrderId in the import.
+ *
+ * <p>The Order of the first valid line of an OrderId is the canonical Order of the group, every item of the group
+ * refers to it. Lines with the same OrderId and different order data are conflicts.</p>
+ *
+ * @author zamek
+ *
+ */
+final class OrderGroup {
+
+	private final static long FNV_OFFSET = 0xCBF29CE484222325L;
+	private final static long FNV_PRIME = 0x100000001B3L;
+
+	/**
+	 * Marker of the null fields in the fingerprint
+	 */
+	private final static long NULL_MARK = 0x5BD1E9955BD1E995L;
+
+	private final Order order;
+	private final List<OrderItem> items;
+
+	/**
+	 * Constructor of OrderGroup
+	 *
+	 * @param order canonical Order of the group
+	 */
+	OrderGroup(Order order) {
+		this.order = order;
+		this.items = new ArrayList<>();
+	}
+
+	/**
+	 * @return the canonical Order
+	 */
+	Order getOrder() {
+		return this.order;
+	}
+
+	/**
+	 * @return the items of the group in input order
+	 */
+	List<OrderItem> getItems() {
+		return this.items;
+	}
+
+	/**
+	 * Checking the order data of a line with the same OrderId
+	 *
+	 * @param other Order of a line
+	 * @return true if the buyer, address or the date of the order is different from the canonical Order
+	 */
+	boolean conflicts(Order other) {
+		return !Objects.equals(this.order.getBuyerName(), other.getBuyerName())
+				|| !Objects.equals(this.order.getBuyerEmail(), other.getBuyerEmail())
+				|| !Objects.equals(this.order.getAddress(), other.getAddress())
+				|| !Objects.equals(this.order.getPostCode(), other.getPostCode())
+				|| !Objects.equals(this.order.getOrderDate(), other.getOrderDate());
+	}
+
+	/**
+	 * 64 bit hash of the order data compared by conflicts()
+	 * 
+	 * <p>It replaces the canonical Order when the groups are not kept in memory. Different order data gets the same 
+	 * fingerprint only by a 64 bit hash collision.</p>
+	 *
+	 * @param order Order of a line
+	 * @return fingerprint of the buyer, address and date of the order
+	 */
+	static long fingerprint(Order order) {
+		long h = FNV_OFFSET;
+		h = hash(h, order.getBuyerName());
+		h = hash(h, order.getBuyerEmail());
+		h = hash(h, order.getAddress());
+		h = mix(h, order.getPostCode() == null ? NULL_MARK : order.getPostCode().longValue());
+		return mix(h, order.getOrderDate() == null ? NULL_MARK : order.getOrderDate().toEpochDay());
+	}
+
+	private static long hash(long h, String s) {
+		if (s == null)
+			return mix(h, NULL_MARK);
+		long r = h;
+		for (int i = 0, n = s.length(); i < n; ++i)
+			r = (r ^ s.charAt(i)) * FNV_PRIME;
+		return mix(r, s.length());
+	}
+
+	private static long mix(long h, long v) {
+		long r = (h ^ v) * FNV_PRIME;
+		return r ^ (r >>> 32);
+	}
+}
@@ -0,0 +1,112 @@
+package com.zamek.wob.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Sequential reader stage of the import pipeline.
+ *
+ * <p>It streams the input in blocks and hands the complete lines of a block over to the validation workers.
+ * The blocks are parsed like the ranges of ChunkReader: lines are split into fields on the bytes by LineTokenizer
+ * if the header of the file is the same as CSVImporter.HEADER, other lines and files are parsed by commons-csv.</p>
+ *
+ * <p>The blocks are read from the start of the file, so a block always ends outside of quoted fields and fields
+ * can contain the record separator in quoted form.</p>
+ *
+ * <p>The input is decoded as UTF-8, malformed bytes are replaced with U+FFFD like in ChunkReader, so a file is accepted
+ * or rejected in the same way by both readers.</p>
+ *
+ * @author zamek
+ *
+ */
+class RecordReader implements ImportPipeline.Source {
+
+	/**
+	 * Size of a block, it is doubled for a line longer than it
+	 */
+	private final static int BLOCK_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final Function<CSVRecord, ImportLine> validator;
+	private final Function<LineTokenizer, ImportLine> fieldValidator;
+
+	/**
+	 * Constructor of RecordReader
+	 *
+	 * @param channel opened input file
+	 * @param validator converts a record to an ImportLine, it is called from the worker threads
+	 * @param fieldValidator converts a simple tokenized line to an ImportLine, it is called from the worker threads
+	 */
+	RecordReader(FileChannel channel, Function<CSVRecord, ImportLine> validator, Function<LineTokenizer, ImportLine> fieldValidator) {
+		this.channel = channel;
+		this.validator = validator;
+		this.fieldValidator = fieldValidator;
+	}
+
+	@Override
+	public void read(ImportPipeline.Stage stage) throws IOException, InterruptedException {
+		ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+		CSVFormat format = null;
+		Function<LineTokenizer, ImportLine> tokenized = null;
+		boolean eof = false;
+		while (!eof) {
+			eof = fill(block);
+			block.flip();
+			int end = eof ? block.limit() : LineTokenizer.lastLineEnd(block);
+			if (end > 0) {
+				if (format == null) {
+					LineTokenizer tokenizer = new LineTokenizer(block);
+					if (!tokenizer.next())
+						return;
+					String[] header = ChunkReader.header(tokenizer.line());
+					format = CSVImporter.CSV_FILE_FORMAT.withHeader(header).withSkipHeaderRecord(false);
+					tokenized = Arrays.equals(header, CSVImporter.HEADER) ? this.fieldValidator : null;
+					block.position(tokenizer.position());
+				}
+				ByteBuffer lines = block.duplicate();
+				lines.limit(end);
+				if (lines.hasRemaining())
+					submit(stage, lines, format, tokenized);
+			}
+			block = rest(block, end);
+		}
+	}
+
+	/**
+	 * Reading into a block until it is full or the end of the file
+	 *
+	 * @param block block to fill
+	 * @return true if the end of the file is reached
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean fill(ByteBuffer block) throws IOException {
+		while (block.hasRemaining())
+			if (this.channel.read(block) < 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Creating the next block with the incomplete line at the end of the current one. The current block is
+	 * not reused, it is owned by the worker which parses it.
+	 *
+	 * @param block current block
+	 * @param end end of the complete lines in the current block
+	 * @return the next block to fill
+	 */
+	private static ByteBuffer rest(ByteBuffer block, int end) {
+		block.position(end);
+		int size = block.remaining() < BLOCK_SIZE / 2 ? BLOCK_SIZE : 2 * block.remaining();
+		return ByteBuffer.allocate(size).put(block);
+	}
+
+	private void submit(ImportPipeline.Stage stage, ByteBuffer lines, CSVFormat format, Function<LineTokenizer, ImportLine> tokenized) throws InterruptedException {
+		stage.submit(() -> ChunkReader.parse(lines, format, this.validator, tokenized));
+	}
+}
@@ -2,25 +2,86 @@ package com.zamek.wob.csv;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
-import org.apache.commons.csv.CSVPrinter;
-
+import com.zamek.wob.Consts;
 import com.zamek.wob.domain.ConvertException;
+import com.zamek.wob.util.HasLogger;
 
-public class ResponseFile implements AutoCloseable {
+/**
+ * Response file of the import.
+ *
+ * <p>The records are formatted directly into a large character buffer in the format of CSV_FILE_FORMAT, the line numbers
+ * are not boxed and the messages are quoted only if it is needed. A full buffer is written to the file on the caller
+ * thread, or in asynchronous mode it is handed over to a writer thread through a bounded queue and the caller continues
+ * with a free buffer.</p>
+ *
+ * <p>In COMPACT format only the ERROR records are written one by one. Consecutive OK lines are collapsed into a range
+ * record, its LineNumber is first-last, a single OK line is written as in FULL format. The last record is a trailer
+ * with the totals of the import, its LineNumber is TOTAL.</p>
+ *
+ * <p>It is not thread safe, the messages must be written from one thread.</p>
+ *
+ * @author zamek
+ *
+ */
+public class ResponseFile implements AutoCloseable, HasLogger {
 
 	public final static String LINE_NUMBER = "LineNumber";	//$NON-NLS-1$
 	public final static String STATUS = "Status";	//$NON-NLS-1$
 	public final static String MESSAGE = "Message"; //$NON-NLS-1$
-	
+
 	public final static Object[] HEADER = new Object[] {LINE_NUMBER, STATUS, MESSAGE };
-	
+
 	public final static String ST_STATUS_OK = "OK";	//$NON-NLS-1$
 	public final static String ST_STATUS_ERROR = "ERROR";  //$NON-NLS-1$
-	
+
+	public final static String ST_FORMAT_FULL = "FULL";	//$NON-NLS-1$
+	public final static String ST_FORMAT_COMPACT = "COMPACT";  //$NON-NLS-1$
+
+	/**
+	 * LineNumber of the trailer record of COMPACT format
+	 */
+	public final static String TOTAL = "TOTAL"; //$NON-NLS-1$
+
+	/**
+	 * Separator of the first and last LineNumber of a range record
+	 */
+	public final static char RANGE_SEPARATOR = '-';
+
+	/**
+	 * Default size of the buffer in characters
+	 */
+	public final static int DEF_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Number of buffers of asynchronous mode, one is filled by the caller and the others are waiting for the writer thread
+	 */
+	private final static int BUFFERS = 4;
+
+	/**
+	 * Marker of the end of the records in the queue of the writer thread
+	 */
+	private final static Block END = new Block(0);
+
+	/**
+	 * Buffer of asynchronous mode with the number of its records
+	 */
+	private final static class Block {
+		final StringBuilder chars;
+		int records;
+
+		Block(int capacity) {
+			this.chars = new StringBuilder(capacity);
+		}
+	}
+
 	public enum Status {
 		OK, ERROR;
-		
+
 		public static Status byString(String s) throws ConvertException {
 			switch(s.toUpperCase()) {
 			case ST_STATUS_OK : return OK;
@@ -30,32 +91,295 @@ public class ResponseFile implements AutoCloseable {
 			}
 		}
 	}
-	
+
+	/**
+	 * Formats of the response file
+	 */
+	public enum Format {
+		/**
+		 * Every line has its own record
+		 */
+		FULL,
+
+		/**
+		 * ERROR records, ranges of OK lines and a trailer with the totals
+		 */
+		COMPACT;
+
+		public static Format byString(String s) throws ConvertException {
+			switch(s.toUpperCase()) {
+			case ST_FORMAT_FULL : return FULL;
+			case ST_FORMAT_COMPACT : return COMPACT;
+			default:
+				throw new ConvertException("Unknown response format:"+s); //$NON-NLS-1$
+			}
+		}
+	}
+
 	private String fileName;
-	private FileWriter writer;
-	private CSVPrinter printer;
-	
+	private int bufferSize;
+	private boolean async;
+	private Format format;
+	private boolean ranged;
+	private int rangeFirst;
+	private int rangeLast;
+	private Writer writer;
+	private Block block;
+	private StringBuilder buffer;
+	private int records;
+	private char[] chars;
+	private BlockingQueue<Block> full;
+	private BlockingQueue<Block> free;
+	private Thread writerThread;
+	private volatile IOException failure;
+	private volatile long written;
+
 	public ResponseFile(String name) {
+		this(name, DEF_BUFFER_SIZE, false, Format.FULL);
+	}
+
+	/**
+	 * Constructor of ResponseFile
+	 *
+	 * @param name name of the file
+	 * @param bufferSize size of the buffer in characters
+	 * @param async true if the buffers are written on a writer thread
+	 * @param format format of the records
+	 */
+	public ResponseFile(String name, int bufferSize, boolean async, Format format) {
 		this.fileName=name;
+		this.bufferSize = bufferSize > 0 ? bufferSize : DEF_BUFFER_SIZE;
+		this.async = async;
+		this.format = format;
 	}
-	
-	public void open() throws IOException {		 		
+
+	public void open() throws IOException {
 		this.writer = new FileWriter(this.fileName);
-		this.printer = new CSVPrinter(this.writer, CSVImporter.CSV_FILE_FORMAT);
-		this.printer.printRecord(HEADER);
+		this.block = new Block(this.bufferSize + this.bufferSize / 8);
+		this.buffer = this.block.chars;
+		this.records = 0;
+		this.written = 0;
+		this.chars = new char[this.buffer.capacity()];
+		if (this.async) {
+			this.full = new ArrayBlockingQueue<>(BUFFERS);
+			this.free = new ArrayBlockingQueue<>(BUFFERS);
+			for (int i = 1; i < BUFFERS; ++i)
+				this.free.add(new Block(this.buffer.capacity()));
+			this.writerThread = new Thread(this::writeBuffers, "response-writer"); //$NON-NLS-1$
+			this.writerThread.start();
+		}
+		this.buffer.append(LINE_NUMBER).append(Consts.FIELD_DELIMITER)
+				   .append(STATUS).append(Consts.FIELD_DELIMITER)
+				   .append(MESSAGE).append(Consts.RECORD_SEPARATOR);
 	}
 
 	@Override
-	public void close() throws Exception {
-		if (this.printer != null)
-			this.printer.close();
-		if (this.writer!=null)
+	public void close() throws IOException {
+		if (this.writer == null)
+			return;
+		try {
+			if (this.failure == null) {
+				flushRange();
+				flushBuffer();
+			}
+			if (this.writerThread != null) {
+				this.full.put(END);
+				this.writerThread.join();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Response file is not closed"); //$NON-NLS-1$
+		}
+		finally {
 			this.writer.close();
+			this.writer = null;
+		}
+		if (this.failure != null)
+			throw this.failure;
 	}
-	
+
 	public void message(int lineNumber, Status status, String message) throws IOException {
-		if (this.printer == null)
+		if (this.writer == null)
+			throw new IOException("responseFile is not opened"); //$NON-NLS-1$
+		if (this.failure != null)
+			throw this.failure;
+
+		if (this.format == Format.COMPACT) {
+			if (status == Status.OK && (message == null || message.isEmpty())) {
+				if (!this.ranged || lineNumber != this.rangeLast + 1) {
+					flushRange();
+					this.ranged = true;
+					this.rangeFirst = lineNumber;
+				}
+				this.rangeLast = lineNumber;
+				return;
+			}
+			flushRange();
+		}
+		this.buffer.append(lineNumber);
+		append(status, message);
+	}
+
+	/**
+	 * Getting the progress of the file
+	 *
+	 * <p>The records are counted when their buffer is written to the file, the records waiting in a buffer or in the
+	 * queue of the writer thread are not counted. The header is not counted, the range and trailer records of COMPACT 
+	 * format are counted as one record.</p>
+	 *
+	 * @return number of records written to the file, it can be called from any thread
+	 */
+	public long getWritten() {
+		return this.written;
+	}
+
+	/**
+	 * Writing the trailer record with the totals of the import in COMPACT format, in FULL format it does nothing.
+	 * The status of the trailer is OK only if every processed line is valid and there are no error lines.
+	 *
+	 * @param processed number of processed lines
+	 * @param valid number of valid lines
+	 * @param errors number of error lines
+	 * @throws IOException if the buffer cannot be written
+	 */
+	public void trailer(int processed, int valid, int errors) throws IOException {
+		if (this.format != Format.COMPACT)
+			return;
+		if (this.writer == null)
 			throw new IOException("responseFile is not opened"); //$NON-NLS-1$
-		this.printer.printRecord(Integer.valueOf(lineNumber), status, message);
+		if (this.failure != null)
+			throw this.failure;
+
+		flushRange();
+		this.buffer.append(TOTAL);
+		append(errors == 0 && processed == valid ? Status.OK : Status.ERROR,
+				String.format("processed=%d,valid=%d,error=%d", Integer.valueOf(processed), Integer.valueOf(valid), Integer.valueOf(errors))); //$NON-NLS-1$
+	}
+
+	/**
+	 * Writing the pending range of OK lines
+	 *
+	 * @throws IOException if the buffer cannot be written
+	 */
+	private void flushRange() throws IOException {
+		if (!this.ranged)
+			return;
+		this.ranged = false;
+		this.buffer.append(this.rangeFirst);
+		if (this.rangeLast != this.rangeFirst)
+			this.buffer.append(RANGE_SEPARATOR).append(this.rangeLast);
+		append(Status.OK, null);
+	}
+
+	/**
+	 * Appending the fields after the LineNumber and the record separator
+	 *
+	 * @param status status of the record
+	 * @param message message of the record
+	 * @throws IOException if the buffer cannot be written
+	 */
+	private void append(Status status, String message) throws IOException {
+		this.buffer.append(Consts.FIELD_DELIMITER).append(status.name());
+		if (message == null)
+			this.buffer.append(Consts.FIELD_DELIMITER);
+		else if (isSimple(message))
+			this.buffer.append(Consts.FIELD_DELIMITER).append(message);
+		else
+			CSVImporter.CSV_FILE_FORMAT.print(message, this.buffer, false);
+		this.buffer.append(Consts.RECORD_SEPARATOR);
+		++this.records;
+		if (this.buffer.length() >= this.bufferSize)
+			flushBuffer();
+	}
+
+	/**
+	 * Checking a message which can be written without quotes. Other messages are printed by CSV_FILE_FORMAT.
+	 *
+	 * @param message message of a record, it is not the first field of the record
+	 * @return true if the message is empty or it has no special characters and it doesn't start with a
+	 * comment or control character and doesn't end with a space
+	 */
+	private static boolean isSimple(String message) {
+		int len = message.length();
+		if (len == 0)
+			return true;
+		if (message.charAt(0) <= '#' || message.charAt(len - 1) <= ' ')
+			return false;
+		for (int i = 0; i < len; ++i) {
+			char c = message.charAt(i);
+			if (c == Consts.FIELD_DELIMITER || c == '"' || c == '\n' || c == '\r')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writing the buffer to the file or handing it over to the writer thread
+	 *
+	 * @throws IOException if the buffer cannot be written
+	 */
+	private void flushBuffer() throws IOException {
+		if (this.buffer.length() == 0)
+			return;
+		if (!this.async) {
+			write(this.buffer);
+			this.writer.flush();
+			this.written += this.records;
+			this.records = 0;
+			return;
+		}
+		try {
+			this.block.records = this.records;
+			this.full.put(this.block);
+			this.block = this.free.take();
+			this.buffer = this.block.chars;
+			this.records = 0;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Response file writing interrupted"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Writing a buffer to the file and clearing it
+	 *
+	 * @param sb buffer of records
+	 * @throws IOException if the file cannot be written
+	 */
+	private void write(StringBuilder sb) throws IOException {
+		int len = sb.length();
+		if (this.chars.length < len)
+			this.chars = new char[len];
+		sb.getChars(0, len, this.chars, 0);
+		this.writer.write(this.chars, 0, len);
+		sb.setLength(0);
+	}
+
+	/**
+	 * Loop of the writer thread, after an error the buffers are dropped until the end
+	 */
+	private void writeBuffers() {
+		try {
+			for (Block b = this.full.take(); b != END; b = this.full.take()) {
+				if (this.failure == null) {
+					try {
+						write(b.chars);
+						this.writer.flush();
+						this.written += b.records;
+					}
+					catch (IOException e) {
+						getLogger().error("Cannot write response file {}: {}", this.fileName, e.getMessage()); //$NON-NLS-1$
+						this.failure = e;
+					}
+				}
+				b.chars.setLength(0);
+				this.free.put(b);
+			}
+		}
+		catch (@SuppressWarnings("unused") InterruptedException e) {
+			//NC response file is closed
+		}
 	}
 }
@@ -0,0 +1,253 @@
+package com.zamek.wob.daemon;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.zamek.wob.util.HasLogger;
+
+/**
+ * Watcher of an inbox directory of CSV files.
+ *
+ * <p>The CSV files of the inbox are converted one by one in arrival order, every file gets its own response file in
+ * the outbox, name.csv gets name.response.csv. A converted file is moved into the done directory, a file whose 
+ * conversion failed is moved into the failed directory. The files already in the inbox at the start are converted 
+ * first.</p>
+ *
+ * <p>The directory is watched by a WatchService. A file is converted when its size and modification time haven't
+ * changed for the settle time, so a file which is being copied into the inbox is not read before it is complete.
+ * Writing the file with another name and renaming it into the inbox avoids the wait.</p>
+ *
+ * @author zamek
+ *
+ */
+public class InboxWatcher implements Closeable, HasLogger {
+
+	public final static String CSV_SUFFIX = ".csv"; //$NON-NLS-1$
+	public final static String RESPONSE_SUFFIX = ".response.csv"; //$NON-NLS-1$
+
+	/**
+	 * Default time without changes before a file is converted in milliseconds
+	 */
+	public final static long DEF_SETTLE_MILLIS = 500;
+
+	/**
+	 * Conversion of a CSV file into a response file
+	 */
+	@FunctionalInterface
+	public interface Conversion {
+		/**
+		 * Converting a file
+		 *
+		 * @param input path of the CSV file
+		 * @param response path of the response file
+		 * @throws Exception if the conversion failed
+		 */
+		void convert(Path input, Path response) throws Exception;
+	}
+
+	/**
+	 * A file waiting for the end of its writing
+	 */
+	private final static class Pending {
+		long size;
+		long modified;
+		long since;
+	}
+
+	private final Path inbox;
+	private final Path outbox;
+	private final Path done;
+	private final Path failed;
+	private final long settleMillis;
+	private final Conversion conversion;
+	private final WatchService watcher;
+	private final Map<Path, Pending> pending = new LinkedHashMap<>();
+	private volatile boolean closed;
+	private volatile int converted;
+	private volatile int failures;
+
+	/**
+	 * Constructor of InboxWatcher, the directories are created if they don't exist
+	 *
+	 * @param inbox watched directory
+	 * @param outbox directory of the response files
+	 * @param done directory of the converted files
+	 * @param failed directory of the files whose conversion failed
+	 * @param settleMillis time without changes before a file is converted in milliseconds
+	 * @param conversion conversion of a file
+	 * @throws IOException if a directory cannot be created or watched
+	 */
+	public InboxWatcher(Path inbox, Path outbox, Path done, Path failed, long settleMillis, Conversion conversion) throws IOException {
+		this.inbox = Files.createDirectories(inbox);
+		this.outbox = Files.createDirectories(outbox);
+		this.done = Files.createDirectories(done);
+		this.failed = Files.createDirectories(failed);
+		this.settleMillis = settleMillis > 0 ? settleMillis : DEF_SETTLE_MILLIS;
+		this.conversion = conversion;
+		this.watcher = inbox.getFileSystem().newWatchService();
+		inbox.register(this.watcher, ENTRY_CREATE, ENTRY_MODIFY);
+	}
+
+	/**
+	 * Watching the inbox until the watcher is closed
+	 */
+	public void run() {
+		getLogger().info("Watching {}", this.inbox); //$NON-NLS-1$
+		scan();
+		try {
+			while (!this.closed) {
+				WatchKey key = this.watcher.poll(this.settleMillis, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == OVERFLOW)
+							scan();
+						else
+							offer(this.inbox.resolve((Path) event.context()));
+					}
+					key.reset();
+				}
+				convertSettled();
+			}
+		}
+		catch (@SuppressWarnings("unused") ClosedWatchServiceException e) {
+			//NC watcher is closed
+		}
+		catch (@SuppressWarnings("unused") InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		getLogger().info("Watching of {} is stopped, {} files converted, {} failed", this.inbox,  //$NON-NLS-1$
+				Integer.valueOf(this.converted), Integer.valueOf(this.failures));
+	}
+
+	/**
+	 * @return number of converted files
+	 */
+	public int getConverted() {
+		return this.converted;
+	}
+
+	/**
+	 * @return number of files whose conversion failed
+	 */
+	public int getFailed() {
+		return this.failures;
+	}
+
+	/**
+	 * Stopping the watching, it can be called from any thread. The conversion in progress is finished.
+	 *
+	 * @throws IOException if the WatchService cannot be closed
+	 */
+	public void stop() throws IOException {
+		this.closed = true;
+		this.watcher.close();
+	}
+
+	/**
+	 * Stopping the watching and releasing the WatchService
+	 */
+	@Override
+	public void close() throws IOException {
+		stop();
+	}
+
+	/**
+	 * Adding the CSV files of the inbox
+	 */
+	private void scan() {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.inbox, '*' + CSV_SUFFIX)) {
+			for (Path file : files)
+				offer(file);
+		}
+		catch (IOException e) {
+			getLogger().error("Cannot read {}: {}", this.inbox, e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Adding a changed file of the inbox, other files than CSV are ignored
+	 *
+	 * @param file path of the file
+	 */
+	private void offer(Path file) {
+		if (!file.getFileName().toString().endsWith(CSV_SUFFIX) || !Files.isRegularFile(file))
+			return;
+		if (!this.pending.containsKey(file))
+			this.pending.put(file, new Pending());
+	}
+
+	/**
+	 * Converting the files which haven't changed for the settle time
+	 */
+	private void convertSettled() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Map.Entry<Path, Pending>> it = this.pending.entrySet().iterator(); it.hasNext() && !this.closed; ) {
+			Map.Entry<Path, Pending> e = it.next();
+			Path file = e.getKey();
+			Pending p = e.getValue();
+			BasicFileAttributes attrs;
+			try {
+				attrs = Files.readAttributes(file, BasicFileAttributes.class);
+			}
+			catch (@SuppressWarnings("unused") IOException ex) {
+				it.remove(); //NC the file is removed
+				continue;
+			}
+			long modified = attrs.lastModifiedTime().toMillis();
+			if (p.since == 0 || attrs.size() != p.size || modified != p.modified) {
+				p.size = attrs.size();
+				p.modified = modified;
+				p.since = now;
+			}
+			else if (now - p.since >= this.settleMillis) {
+				it.remove();
+				convert(file);
+			}
+		}
+	}
+
+	/**
+	 * Converting a file and moving it into the done or failed directory
+	 *
+	 * @param file path of the file
+	 */
+	private void convert(Path file) {
+		String name = file.getFileName().toString();
+		Path response = this.outbox.resolve(name.substring(0, name.length() - CSV_SUFFIX.length()) + RESPONSE_SUFFIX);
+		long start = System.currentTimeMillis();
+		Path target = this.done;
+		try {
+			this.conversion.convert(file, response);
+			getLogger().info("{} converted into {} in {} ms", file, response, Long.valueOf(System.currentTimeMillis() - start)); //$NON-NLS-1$
+			++this.converted;
+		}
+		catch (Exception e) {
+			getLogger().error("Cannot convert {}: {}", file, e.getMessage()); //$NON-NLS-1$
+			target = this.failed;
+			++this.failures;
+		}
+		try {
+			Files.move(file, target.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e) {
+			getLogger().error("Cannot move {} into {}: {}", file, target, e.getMessage()); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.zamek.wob.db;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+import com.zamek.wob.util.HasLogger;
+
+/**
+ * Id lookup with batched IN queries.
+ *
+ * <p>prefetch() resolves all ids of a batch of lines with queries of maximum IN_SIZE ids, and the checks of the lines
+ * only look up the result of the batch. It replaces two queries per line with two queries per IN_SIZE lines.</p>
+ *
+ * <p>An id which was not given to the last prefetch() is checked with a single query.</p>
+ *
+ * @author zamek
+ *
+ */
+public class BatchIdLookup implements IdLookup, HasLogger {
+
+	@SuppressWarnings("unused")
+	private final static boolean DEBUG = true;
+
+	/**
+	 * Maximum number of ids in an IN query
+	 */
+	private final static int IN_SIZE = 1000;
+
+	private final static String ID = "id"; //$NON-NLS-1$
+
+	private EntityManager entityManager;
+	private Set<Long> orderIds;
+	private Set<Long> existingOrders;
+	private Set<Long> itemIds;
+	private Set<Long> existingItems;
+
+	/**
+	 * Constructor of BatchIdLookup
+	 *
+	 * @param em Entity Manager for the database
+	 */
+	public BatchIdLookup(EntityManager em) {
+		this.entityManager = em;
+		this.orderIds = new HashSet<>();
+		this.existingOrders = new HashSet<>();
+		this.itemIds = new HashSet<>();
+		this.existingItems = new HashSet<>();
+	}
+
+	@Override
+	public void prefetch(long[] orders, int orderCount, long[] items, int itemCount) {
+		fetch(Order.class, orders, orderCount, this.orderIds, this.existingOrders);
+		fetch(OrderItem.class, items, itemCount, this.itemIds, this.existingItems);
+	}
+
+	@Override
+	public boolean orderExists(long id) {
+		return exists(Order.class, id, this.orderIds, this.existingOrders);
+	}
+
+	@Override
+	public boolean itemExists(long id) {
+		return exists(OrderItem.class, id, this.itemIds, this.existingItems);
+	}
+
+	/**
+	 * Checking an id
+	 *
+	 * @param entity class of the entity
+	 * @param id id to check
+	 * @param fetched ids of the last prefetch
+	 * @param existing existing ids of the last prefetch
+	 * @return true if the id exists in the database
+	 */
+	private boolean exists(Class<?> entity, long id, Set<Long> fetched, Set<Long> existing) {
+		Long lid = Long.valueOf(id);
+		if (fetched.contains(lid))
+			return existing.contains(lid);
+
+		return this.entityManager.find(entity, lid) != null;
+	}
+
+	/**
+	 * Resolving the ids of a batch
+	 *
+	 * @param entity class of the entity
+	 * @param ids ids of the batch
+	 * @param count number of ids
+	 * @param fetched it receives the ids of the batch
+	 * @param existing it receives the existing ids of the batch
+	 */
+	private void fetch(Class<?> entity, long[] ids, int count, Set<Long> fetched, Set<Long> existing) {
+		fetched.clear();
+		existing.clear();
+		List<Long> slice = new ArrayList<>(IN_SIZE);
+		for (int i = 0; i < count; ++i) {
+			Long id = Long.valueOf(ids[i]);
+			if (!fetched.add(id))
+				continue;
+			slice.add(id);
+			if (slice.size() == IN_SIZE) {
+				existing.addAll(query(entity, slice));
+				slice.clear();
+			}
+		}
+		if (!slice.isEmpty())
+			existing.addAll(query(entity, slice));
+	}
+
+	/**
+	 * Querying the existing ids
+	 *
+	 * @param entity class of the entity
+	 * @param ids ids to check
+	 * @return ids existing in the database
+	 */
+	private <T> List<Long> query(Class<T> entity, List<Long> ids) {
+		CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+		Root<T> root = cq.from(entity);
+		Path<Long> id = root.get(ID);
+		cq.select(id).where(id.in(ids));
+		return this.entityManager.createQuery(cq).getResultList();
+	}
+}
@@ -0,0 +1,233 @@
+package com.zamek.wob.db;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+import com.zamek.wob.util.HasLogger;
+
+/**
+ * PostgreSQL backend of the import.
+ *
+ * <p>Rows are collected in the text format of COPY and they are sent with COPY FROM STDIN on the connection of
+ * the current JPA transaction. It skips the entity lifecycle and the per row statements, so it is much faster than
+ * the JPA backend for large inputs.</p>
+ *
+ * <p>Orders are always copied before the items of the same buffer, so the foreign keys are valid. The late totals of 
+ * the orders are updated by OrderTotals after the buffers are copied.</p>
+ *
+ * <p>It can be used only with PostgreSQL, see isSupported().</p>
+ *
+ * @author zamek
+ *
+ */
+public class CopyOrderWriter implements OrderWriter, HasLogger {
+
+	@SuppressWarnings("unused")
+	private final static boolean DEBUG = true;
+
+	private final static String KEY_JDBC_URL = "javax.persistence.jdbc.url"; //$NON-NLS-1$
+	private final static String POSTGRESQL_URL = "jdbc:postgresql:"; //$NON-NLS-1$
+
+	/**
+	 * Number of buffered characters of items before a COPY
+	 */
+	private final static int COPY_BUFFER_SIZE = 1 << 20;
+
+	private final static char DELIMITER = '\t';
+	private final static char NEW_LINE = '\n';
+	private final static String NULL = "\\N"; //$NON-NLS-1$
+
+	private final static String COPY_ORDERS = String.format("COPY %s (%s, %s, %s, %s, %s, %s, %s) FROM STDIN",  //$NON-NLS-1$
+			Order.TABLE_NAME, Order.COL_ID, Order.COL_BUYER_NAME, Order.COL_BUYER_EMAIL, Order.COL_ORDER_DATE,
+			Order.COL_ORDER_TOTAL_VALUE, Order.COL_ADDRESS, Order.COL_POST_CODE);
+
+	private final static String COPY_ITEMS = String.format("COPY %s (%s, %s, %s, %s, %s, %s, %s) FROM STDIN", //$NON-NLS-1$
+			OrderItem.TABLE_NAME, OrderItem.COL_ORDER_ITEM_ID, OrderItem.COL_ORDER_ID, OrderItem.COL_SALE_PRICE,
+			OrderItem.COL_SHIPPING_PRICE, OrderItem.COL_TOTAL_ITEM_PRICE, OrderItem.COL_SKU, OrderItem.COL_STATUS);
+
+	private EntityManager entityManager;
+	private int commitSize;
+	private int uncommitted;
+	private OrderTotals totals;
+	private StringBuilder orders;
+	private StringBuilder items;
+
+	/**
+	 * Constructor of CopyOrderWriter
+	 *
+	 * @param em Entity Manager for the database, it must be connected to a PostgreSQL database
+	 * @param commitSize number of orders in a transaction, 0 or less means a single transaction
+	 */
+	public CopyOrderWriter(EntityManager em, int commitSize) {
+		this.entityManager = em;
+		this.commitSize = commitSize;
+		this.totals = new OrderTotals(em);
+		this.orders = new StringBuilder();
+		this.items = new StringBuilder(COPY_BUFFER_SIZE);
+	}
+
+	/**
+	 * Checking the database of an EntityManager
+	 *
+	 * @param em Entity Manager for the database
+	 * @return true if the jdbc url of the EntityManagerFactory is a PostgreSQL url
+	 */
+	public static boolean isSupported(EntityManager em) {
+		Map<String, Object> properties = em.getEntityManagerFactory().getProperties();
+		Object url = properties.get(KEY_JDBC_URL);
+		return url != null && url.toString().startsWith(POSTGRESQL_URL);
+	}
+
+	@Override
+	public void begin() {
+		this.entityManager.getTransaction().begin();
+	}
+
+	@Override
+	public void order(Order order) {
+		if (this.commitSize > 0 && this.uncommitted == this.commitSize)
+			commit();
+
+		field(this.orders, order.getId()).append(DELIMITER);
+		field(this.orders, order.getBuyerName()).append(DELIMITER);
+		field(this.orders, order.getBuyerEmail()).append(DELIMITER);
+		field(this.orders, order.getOrderDate()).append(DELIMITER);
+		this.orders.append(order.getOrderTotalValue()).append(DELIMITER);
+		field(this.orders, order.getAddress()).append(DELIMITER);
+		field(this.orders, order.getPostCode()).append(NEW_LINE);
+		++this.uncommitted;
+	}
+
+	@Override
+	public void item(OrderItem item) {
+		field(this.items, item.getId()).append(DELIMITER);
+		field(this.items, item.getOrder().getId()).append(DELIMITER);
+		this.items.append(item.getSalePrice()).append(DELIMITER);
+		this.items.append(item.getShippingPrice()).append(DELIMITER);
+		this.items.append(item.getTotalItemPrice()).append(DELIMITER);
+		field(this.items, item.getSKU()).append(DELIMITER);
+		field(this.items, item.getStatus() == null ? null : Integer.valueOf(item.getStatus().ordinal())).append(NEW_LINE);
+		if (this.items.length() >= COPY_BUFFER_SIZE)
+			flush();
+	}
+
+	@Override
+	public void total(Order order) {
+		if (this.commitSize > 0 && this.uncommitted == this.commitSize)
+			commit();
+		if (this.totals.add(order))
+			flush();
+		++this.uncommitted;
+	}
+
+	@Override
+	public void finish() {
+		flush();
+		this.entityManager.getTransaction().commit();
+	}
+
+	@Override
+	public void rollback() {
+		this.orders.setLength(0);
+		this.items.setLength(0);
+		this.totals.clear();
+		EntityTransaction tr = this.entityManager.getTransaction();
+		if (tr.isActive())
+			tr.rollback();
+	}
+
+	/**
+	 * Sending the buffered orders and items to the database, then the totals of the orders
+	 */
+	private void flush() {
+		try {
+			Connection connection = connection();
+			copy(connection, COPY_ORDERS, this.orders);
+			copy(connection, COPY_ITEMS, this.items);
+		}
+		catch (SQLException e) {
+			throw new PersistenceException("COPY failed:"+e.getMessage(), e); //$NON-NLS-1$
+		}
+		this.totals.execute();
+	}
+
+	/**
+	 * Sending the buffers, committing the current transaction and starting a new transaction
+	 */
+	private void commit() {
+		flush();
+		EntityTransaction tr = this.entityManager.getTransaction();
+		tr.commit();
+		this.entityManager.clear();
+		tr.begin();
+		this.uncommitted = 0;
+	}
+
+	/**
+	 * Getting the connection of the current transaction
+	 *
+	 * @return jdbc connection
+	 */
+	private Connection connection() {
+		return this.entityManager.unwrap(Connection.class);
+	}
+
+	/**
+	 * Copying a buffer into a table and clearing the buffer
+	 *
+	 * @param connection connection of the current transaction
+	 * @param sql COPY FROM STDIN statement
+	 * @param rows rows in COPY text format
+	 * @throws SQLException if the COPY failed
+	 */
+	private static void copy(Connection connection, String sql, StringBuilder rows) throws SQLException {
+		if (rows.length() == 0)
+			return;
+
+		CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+		try {
+			copyManager.copyIn(sql, new StringReader(rows.toString()));
+		}
+		catch (IOException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+		rows.setLength(0);
+	}
+
+	/**
+	 * Appending a field in COPY text format
+	 *
+	 * @param sb buffer of rows
+	 * @param value value of the field, null is written as \N
+	 * @return reference to the buffer
+	 */
+	private static StringBuilder field(StringBuilder sb, Object value) {
+		if (value == null)
+			return sb.append(NULL);
+
+		String s = value.toString();
+		for (int i = 0, n = s.length(); i < n; ++i) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '\\': sb.append("\\\\"); break; //$NON-NLS-1$
+			case '\t': sb.append("\\t"); break; //$NON-NLS-1$
+			case '\n': sb.append("\\n"); break; //$NON-NLS-1$
+			case '\r': sb.append("\\r"); break; //$NON-NLS-1$
+			default: sb.append(c);
+			}
+		}
+		return sb;
+	}
+}
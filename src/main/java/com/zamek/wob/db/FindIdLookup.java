@@ -0,0 +1,37 @@
+package com.zamek.wob.db;
+
+import javax.persistence.EntityManager;
+
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+
+/**
+ * Id lookup with a EntityManager.find call for every id
+ * 
+ * @author zamek
+ *
+ */
+public class FindIdLookup implements IdLookup {
+
+	private EntityManager entityManager;
+	
+	/**
+	 * Constructor of FindIdLookup
+	 * 
+	 * @param em Entity Manager for the database
+	 */
+	public FindIdLookup(EntityManager em) {
+		this.entityManager = em;
+	}
+	
+	@Override
+	public boolean orderExists(long id) {
+		return this.entityManager.find(Order.class, Long.valueOf(id)) != null;
+	}
+
+	@Override
+	public boolean itemExists(long id) {
+		return this.entityManager.find(OrderItem.class, Long.valueOf(id)) != null;
+	}
+
+}
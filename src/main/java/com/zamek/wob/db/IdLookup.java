@@ -0,0 +1,79 @@
+package com.zamek.wob.db;
+
+import com.zamek.wob.domain.ConvertException;
+
+/**
+ * Existence checks of the ids of the import in the database.
+ * 
+ * <p>The importer calls prefetch() with the ids of a batch of lines before it checks the lines of the batch one by one,
+ * so an implementation can resolve the ids of the batch with less queries.</p>
+ * 
+ * <p>Only the rows existing before the import are checked, the ids written by the import are handled by the importer.</p>
+ * 
+ * @author zamek
+ *
+ */
+public interface IdLookup {
+	
+	public final static String ST_FIND = "FIND"; //$NON-NLS-1$
+	public final static String ST_BATCH = "BATCH"; //$NON-NLS-1$
+	public final static String ST_PRELOAD = "PRELOAD"; //$NON-NLS-1$
+	
+	/**
+	 * Available strategies
+	 */
+	public enum Strategy {
+		/**
+		 * Every id is checked with EntityManager.find
+		 */
+		FIND,
+		
+		/**
+		 * Ids of a batch are checked with IN queries
+		 */
+		BATCH,
+		
+		/**
+		 * All ids of the database are loaded into memory before the import
+		 */
+		PRELOAD;
+		
+		public static Strategy byString(String s) throws ConvertException {
+			switch(s.toUpperCase()) {
+			case ST_FIND : return FIND;
+			case ST_BATCH : return BATCH;
+			case ST_PRELOAD : return PRELOAD;
+			default:
+				throw new ConvertException("Unknown id lookup strategy:"+s); //$NON-NLS-1$
+			}
+		}
+	}
+	
+	/**
+	 * Preparing the checks of a batch of lines
+	 * 
+	 * @param orderIds OrderIds of the batch 
+	 * @param orderCount number of OrderIds in orderIds
+	 * @param itemIds OrderItemIds of the batch
+	 * @param itemCount number of OrderItemIds in itemIds
+	 */
+	default void prefetch(long[] orderIds, int orderCount, long[] itemIds, int itemCount) {
+		//NC
+	}
+	
+	/**
+	 * Checking an OrderId
+	 * 
+	 * @param id OrderId
+	 * @return true if an Order exists with id in the database
+	 */
+	boolean orderExists(long id);
+	
+	/**
+	 * Checking an OrderItemId
+	 * 
+	 * @param id OrderItemId
+	 * @return true if an OrderItem exists with id in the database
+	 */
+	boolean itemExists(long id);
+}
@@ -0,0 +1,116 @@
+package com.zamek.wob.db;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+import com.zamek.wob.util.HasLogger;
+
+/**
+ * JPA backend of the import.
+ *
+ * <p>Entities are persisted with the EntityManager and flushed in JDBC batches. The transaction is committed
+ * and the persistence context is cleared after every commitSize new orders, so the memory of the EntityManager
+ * and the locks of the database are bounded.</p>
+ *
+ * <p>An item of an order from an earlier transaction refers to the reference of the order in the current persistence
+ * context. The late totals of the orders from earlier transactions are updated by OrderTotals, the orders of the 
+ * current transaction are still managed, so their totals are written at the commit.</p>
+ *
+ * @author zamek
+ *
+ */
+public class JpaOrderWriter implements OrderWriter, HasLogger {
+
+	@SuppressWarnings("unused")
+	private final static boolean DEBUG = true;
+
+	/**
+	 * Number of persisted items between two flushes, a flush sends the inserts in JDBC batches
+	 */
+	private final static int FLUSH_INTERVAL = 1000;
+
+	private EntityManager entityManager;
+	private OrderTotals totals;
+	private int commitSize;
+	private int unflushed;
+	private int uncommitted;
+
+	/**
+	 * Constructor of JpaOrderWriter
+	 *
+	 * @param em Entity Manager for the database
+	 * @param commitSize number of orders in a transaction, 0 or less means a single transaction
+	 */
+	public JpaOrderWriter(EntityManager em, int commitSize) {
+		this.entityManager = em;
+		this.totals = new OrderTotals(em);
+		this.commitSize = commitSize;
+	}
+
+	@Override
+	public void begin() {
+		this.entityManager.setFlushMode(FlushModeType.COMMIT);
+		this.entityManager.getTransaction().begin();
+	}
+
+	@Override
+	public void order(Order order) {
+		if (this.commitSize > 0 && this.uncommitted == this.commitSize)
+			commit();
+		this.entityManager.persist(order);
+		++this.uncommitted;
+	}
+
+	@Override
+	public void item(OrderItem item) {
+		Order order = item.getOrder();
+		if (!this.entityManager.contains(order))
+			item.setOrder(this.entityManager.getReference(Order.class, order.getId()));
+		this.entityManager.persist(item);
+		if (++this.unflushed == FLUSH_INTERVAL) {
+			this.entityManager.flush();
+			this.unflushed = 0;
+		}
+	}
+
+	@Override
+	public void total(Order order) {
+		if (this.entityManager.contains(order))
+			return;
+		if (this.commitSize > 0 && this.uncommitted == this.commitSize)
+			commit();
+		if (this.totals.add(order))
+			this.totals.execute();
+		++this.uncommitted;
+	}
+
+	@Override
+	public void finish() {
+		this.totals.execute();
+		this.entityManager.getTransaction().commit();
+	}
+
+	@Override
+	public void rollback() {
+		this.totals.clear();
+		EntityTransaction tr = this.entityManager.getTransaction();
+		if (tr.isActive())
+			tr.rollback();
+	}
+
+	/**
+	 * Committing the current transaction, clearing the persistence context and starting a new transaction
+	 */
+	private void commit() {
+		this.totals.execute();
+		EntityTransaction tr = this.entityManager.getTransaction();
+		tr.commit();
+		this.entityManager.clear();
+		tr.begin();
+		this.uncommitted = 0;
+		this.unflushed = 0;
+	}
+}
@@ -0,0 +1,88 @@
+package com.zamek.wob.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+import com.zamek.wob.domain.order.Order;
+
+/**
+ * Batch of the total values of orders which were written before all of their items were known.
+ *
+ * <p>The totals are updated with a JDBC batch on the connection of the current transaction, so there is no select
+ * and no merge of the detached orders. The updated orders are evicted from the shared cache, because it still
+ * holds them with their old total.</p>
+ *
+ * @author zamek
+ *
+ */
+final class OrderTotals {
+
+	/**
+	 * Number of totals in a JDBC batch
+	 */
+	private final static int BATCH_SIZE = 1000;
+
+	private final static String UPDATE_TOTAL = String.format("UPDATE %s SET %s = ? WHERE %s = ?", //$NON-NLS-1$
+			Order.TABLE_NAME, Order.COL_ORDER_TOTAL_VALUE, Order.COL_ID);
+
+	private final EntityManager entityManager;
+	private final long[] ids = new long[BATCH_SIZE];
+	private final long[] totals = new long[BATCH_SIZE];
+	private int size;
+
+	/**
+	 * Constructor of OrderTotals
+	 *
+	 * @param em Entity Manager for the database
+	 */
+	OrderTotals(EntityManager em) {
+		this.entityManager = em;
+	}
+
+	/**
+	 * Adding the total of an order to the batch
+	 *
+	 * @param order written order with its final total value
+	 * @return true if the batch is full, it must be sent by execute() before the next add
+	 */
+	boolean add(Order order) {
+		this.ids[this.size] = order.getId().longValue();
+		this.totals[this.size] = order.getOrderTotalValue();
+		return ++this.size == BATCH_SIZE;
+	}
+
+	/**
+	 * Sending the batch in the current transaction, the rows of the orders must be already in the database
+	 */
+	void execute() {
+		if (this.size == 0)
+			return;
+		try (PreparedStatement ps = this.entityManager.unwrap(Connection.class).prepareStatement(UPDATE_TOTAL)) {
+			for (int i = 0; i < this.size; ++i) {
+				ps.setLong(1, this.totals[i]);
+				ps.setLong(2, this.ids[i]);
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new PersistenceException("Cannot update the order totals:"+e.getMessage(), e); //$NON-NLS-1$
+		}
+		Cache cache = this.entityManager.getEntityManagerFactory().getCache();
+		for (int i = 0; i < this.size; ++i)
+			cache.evict(Order.class, Long.valueOf(this.ids[i]));
+		this.size = 0;
+	}
+
+	/**
+	 * Dropping the batch
+	 */
+	void clear() {
+		this.size = 0;
+	}
+}
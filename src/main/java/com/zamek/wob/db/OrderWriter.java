@@ -0,0 +1,94 @@
+package com.zamek.wob.db;
+
+import com.zamek.wob.domain.ConvertException;
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+
+/**
+ * Persistence backend of the import.
+ * 
+ * <p>The importer hands over the orders, every order is followed by its items. The writer decides when the rows are 
+ * sent to the database and when the transactions are committed. Every method can throw PersistenceException.</p>
+ * 
+ * <p>An order is written with its total value if all of its items are known. Otherwise it is written when its first
+ * item arrives, its items follow it in the same or in later transactions, and its total value is stored by total() 
+ * after all items are written.</p>
+ * 
+ * <p>Usage:</p>
+ * <pre>
+ * writer.begin();
+ * writer.order(order);	// total value is set or it is stored later by total()
+ * writer.item(item);	// item.getOrder() is the Order given to order()
+ * ...
+ * writer.total(order);	// only for the orders written before their total was known
+ * writer.finish();
+ * </pre>
+ * 
+ * @author zamek
+ *
+ */
+public interface OrderWriter {
+	
+	public final static String ST_JPA = "JPA"; //$NON-NLS-1$
+	public final static String ST_COPY = "COPY"; //$NON-NLS-1$
+	
+	/**
+	 * Available backends
+	 */
+	public enum Backend {
+		/**
+		 * Portable JPA backend, it works with every database
+		 */
+		JPA, 
+		
+		/**
+		 * PostgreSQL COPY FROM STDIN backend
+		 */
+		COPY;
+		
+		public static Backend byString(String s) throws ConvertException {
+			switch(s.toUpperCase()) {
+			case ST_JPA : return JPA;
+			case ST_COPY : return COPY;
+			default:
+				throw new ConvertException("Unknown import backend:"+s); //$NON-NLS-1$
+			}
+		}
+	}
+	
+	/**
+	 * Starting the first transaction
+	 */
+	void begin();
+	
+	/**
+	 * Writing an Order, its items are written after it
+	 * 
+	 * @param order new Order of the import
+	 */
+	void order(Order order);
+	
+	/**
+	 * Writing an OrderItem
+	 * 
+	 * @param item new item, its order is already written by order(), maybe in an earlier transaction
+	 */
+	void item(OrderItem item);
+	
+	/**
+	 * Storing the final total value of an Order which was written by order() before all of its items were known
+	 * 
+	 * @param order written Order with its total value
+	 */
+	void total(Order order);
+	
+	/**
+	 * Committing the last transaction
+	 */
+	void finish();
+	
+	/**
+	 * Rolling back the current transaction if it is active
+	 */
+	void rollback();
+}
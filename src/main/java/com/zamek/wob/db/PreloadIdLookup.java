@@ -0,0 +1,116 @@
+package com.zamek.wob.db;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+import com.zamek.wob.util.HasLogger;
+import com.zamek.wob.util.LongHashSet;
+
+/**
+ * Id lookup from preloaded sets.
+ *
+ * <p>All existing OrderIds and OrderItemIds are loaded into primitive hash sets when the lookup is created,
+ * so every check is a memory probe without database access. The ids are read in pages ordered by id.
+ * The table of a set has at least twice as many slots as ids rounded up to a power of 2, so the memory of a set 
+ * is 16-32 bytes per id.</p>
+ *
+ * <p>It is worth using if the tables are smaller than the input.</p>
+ *
+ * @author zamek
+ *
+ */
+public class PreloadIdLookup implements IdLookup, HasLogger {
+
+	@SuppressWarnings("unused")
+	private final static boolean DEBUG = true;
+
+	/**
+	 * Number of ids in a page of the preload
+	 */
+	private final static int PAGE_SIZE = 10000;
+
+	private final static String ID = "id"; //$NON-NLS-1$
+
+	private final static int KB = 1024;
+
+	private LongHashSet orderIds;
+	private LongHashSet itemIds;
+
+	/**
+	 * Constructor of PreloadIdLookup, it loads the ids from the database
+	 *
+	 * @param em Entity Manager for the database
+	 */
+	public PreloadIdLookup(EntityManager em) {
+		long orders = count(em, Order.class);
+		long items = count(em, OrderItem.class);
+		getLogger().info("Preloading {} OrderIds and {} OrderItemIds, estimated memory: {} KB",  //$NON-NLS-1$
+				Long.valueOf(orders), Long.valueOf(items),
+				Long.valueOf((LongHashSet.memoryEstimate(orders) + LongHashSet.memoryEstimate(items)) / KB));
+
+		this.orderIds = load(em, Order.class, orders);
+		this.itemIds = load(em, OrderItem.class, items);
+		getLogger().info("Preloaded {} OrderIds and {} OrderItemIds in {} KB", Integer.valueOf(this.orderIds.size()),  //$NON-NLS-1$
+				Integer.valueOf(this.itemIds.size()), Long.valueOf((this.orderIds.memory() + this.itemIds.memory()) / KB));
+	}
+
+	@Override
+	public boolean orderExists(long id) {
+		return this.orderIds.contains(id);
+	}
+
+	@Override
+	public boolean itemExists(long id) {
+		return this.itemIds.contains(id);
+	}
+
+	/**
+	 * Counting the rows of a table
+	 *
+	 * @param em Entity Manager for the database
+	 * @param entity class of the entity
+	 * @return number of rows
+	 */
+	private static <T> long count(EntityManager em, Class<T> entity) {
+		CriteriaBuilder cb = em.getCriteriaBuilder();
+		CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+		cq.select(cb.count(cq.from(entity)));
+		return em.createQuery(cq).getSingleResult().longValue();
+	}
+
+	/**
+	 * Loading the ids of a table in pages. A page starts after the last id of the previous page.
+	 *
+	 * @param em Entity Manager for the database
+	 * @param entity class of the entity
+	 * @param expected number of rows
+	 * @return set of ids
+	 */
+	private static <T> LongHashSet load(EntityManager em, Class<T> entity, long expected) {
+		LongHashSet ids = new LongHashSet((int) Math.min(expected, Integer.MAX_VALUE));
+		CriteriaBuilder cb = em.getCriteriaBuilder();
+		Long last = null;
+		for (;;) {
+			CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+			Root<T> root = cq.from(entity);
+			Path<Long> id = root.get(ID);
+			cq.select(id).orderBy(cb.asc(id));
+			if (last != null)
+				cq.where(cb.greaterThan(id, last));
+
+			List<Long> page = em.createQuery(cq).setMaxResults(PAGE_SIZE).getResultList();
+			for (Long l : page)
+				ids.add(l.longValue());
+			if (page.size() < PAGE_SIZE)
+				return ids;
+			last = page.get(page.size() - 1);
+		}
+	}
+}
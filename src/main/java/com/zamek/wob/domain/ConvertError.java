@@ -0,0 +1,40 @@
+package com.zamek.wob.domain;
+
+/**
+ * Validation error of a field.
+ * 
+ * It is the exception free form of ConvertException, the builders return it in lenient mode. 
+ * 
+ * @author zamek
+ *
+ */
+public final class ConvertError {
+
+	private final ErrorCode code;
+	private final String detail;
+	
+	/**
+	 * Constructor of ConvertError
+	 * 
+	 * @param code code of the error
+	 * @param detail detail of the error, it can be null
+	 */
+	public ConvertError(ErrorCode code, String detail) {
+		this.code = code;
+		this.detail = detail;
+	}
+	
+	/**
+	 * @return code of the error
+	 */
+	public ErrorCode getCode() {
+		return this.code;
+	}
+	
+	/**
+	 * @return message of the error, it is the same as the message of the ConvertException of the error
+	 */
+	public String getMessage() {
+		return this.detail == null ? this.code.getPrefix() : this.code.getPrefix() + this.detail;
+	}
+}
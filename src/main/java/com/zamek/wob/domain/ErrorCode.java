@@ -0,0 +1,51 @@
+package com.zamek.wob.domain;
+
+/**
+ * Codes of the validation errors of the builders.
+ * 
+ * Every code has the prefix of its message, the message of an error is the prefix and the detail of the error.
+ * 
+ * @author zamek
+ *
+ */
+public enum ErrorCode {
+	
+	ORDER_ID("OrderId error:"), //$NON-NLS-1$
+	
+	BUYER_NAME("Buyer's name is empty"), //$NON-NLS-1$
+	
+	BUYER_EMAIL("email error:"), //$NON-NLS-1$
+	
+	ORDER_DATE("order date error:"), //$NON-NLS-1$
+	
+	POST_CODE_FORMAT("PostCode number format error:"), //$NON-NLS-1$
+	
+	ORDER_ITEM_ID("OrderItemId error:"), //$NON-NLS-1$
+	
+	SALE_PRICE_FORMAT("salePrice number format error:"), //$NON-NLS-1$
+	
+	SALE_PRICE_MIN("salePrice is less than 1.0"), //$NON-NLS-1$
+	
+	SHIPPING_PRICE_FORMAT("shippingPrice number format error:"), //$NON-NLS-1$
+	
+	SHIPPING_PRICE_MIN("shippingPrice is less than 0.0"), //$NON-NLS-1$
+	
+	TOTAL_ITEM_PRICE_FORMAT("totalItemPrice number format error:"), //$NON-NLS-1$
+	
+	TOTAL_ITEM_PRICE_MIN("totalItemPrice is less than 1.0"), //$NON-NLS-1$
+	
+	STATUS("Unknown orderitem status:"); //$NON-NLS-1$
+	
+	private final String prefix;
+	
+	private ErrorCode(String prefix) {
+		this.prefix = prefix;
+	}
+	
+	/**
+	 * @return prefix of the message
+	 */
+	public String getPrefix() {
+		return this.prefix;
+	}
+}
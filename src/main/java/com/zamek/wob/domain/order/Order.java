@@ -1,6 +1,6 @@
 package com.zamek.wob.domain.order;
 
-import java.util.Date;
+import java.time.LocalDate;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -45,10 +45,10 @@ public class Order implements HasLogger {
  	private String buyerEmail;  
 	
 	@Column(name=COL_ORDER_DATE, nullable=false)
-	private Date orderDate;
+	private LocalDate orderDate;
 	
 	@Column(name=COL_ORDER_TOTAL_VALUE)
-	private float orderTotalValue;
+	private long orderTotalValue;
 	
 	@Column(name=COL_ADDRESS, nullable=false)
 	private String address;
@@ -105,28 +105,28 @@ public class Order implements HasLogger {
 	/**
 	 * @return the orderDate
 	 */
-	public Date getOrderDate() {
+	public LocalDate getOrderDate() {
 		return this.orderDate;
 	}
 
 	/**
 	 * @param orderDate the orderDate to set
 	 */
-	public void setOrderDate(Date orderDate) {
+	public void setOrderDate(LocalDate orderDate) {
 		this.orderDate = orderDate;
 	}
 
 	/**
-	 * @return the orderTotalValue
+	 * @return the orderTotalValue in cents
 	 */
-	public float getOrderTotalValue() {
+	public long getOrderTotalValue() {
 		return this.orderTotalValue;
 	}
 
 	/**
-	 * @param orderTotalValue the orderTotalValue to set
+	 * @param orderTotalValue the orderTotalValue in cents to set
 	 */
-	public void setOrderTotalValue(float orderTotalValue) {
+	public void setOrderTotalValue(long orderTotalValue) {
 		this.orderTotalValue = orderTotalValue;
 	}
 
@@ -178,7 +178,7 @@ public class Order implements HasLogger {
 		result = prime * result + ((this.buyerName == null) ? 0 : this.buyerName.hashCode());
 		result = prime * result + ((this.id == null) ? 0 : this.id.hashCode());
 		result = prime * result + ((this.orderDate == null) ? 0 : this.orderDate.hashCode());
-		result = prime * result + Float.floatToIntBits(this.orderTotalValue);
+		result = prime * result + (int) (this.orderTotalValue ^ (this.orderTotalValue >>> 32));
 		result = prime * result + ((this.postCode == null) ? 0 : this.postCode.hashCode());
 		return result;
 	}
@@ -220,7 +220,7 @@ public class Order implements HasLogger {
 				return false;
 		} else if (!this.orderDate.equals(other.orderDate))
 			return false;
-		if (Float.floatToIntBits(this.orderTotalValue) != Float.floatToIntBits(other.orderTotalValue))
+		if (this.orderTotalValue != other.orderTotalValue)
 			return false;
 		if (this.postCode == null) {
 			if (other.postCode != null)
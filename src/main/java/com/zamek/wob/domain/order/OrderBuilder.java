@@ -1,15 +1,24 @@
 package com.zamek.wob.domain.order;
 
-import java.text.ParseException;
+import java.nio.ByteBuffer;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.Date;
 import java.util.Optional;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.validator.routines.EmailValidator;
 
+import com.zamek.wob.domain.ConvertError;
 import com.zamek.wob.domain.ConvertException;
+import com.zamek.wob.domain.ErrorCode;
+import com.zamek.wob.util.ByteParser;
+import com.zamek.wob.util.DateUtils;
 import com.zamek.wob.util.HasLogger;
+import com.zamek.wob.util.MemoCache;
+import com.zamek.wob.util.NumberChecker;
 
 /**
  * Builder for Order object. 
@@ -17,6 +26,9 @@ import com.zamek.wob.util.HasLogger;
  *  It can build an Order obejct if every properties are valid 
  *  It returns an Optional &lt;Order&gt; which is contains a vlaid Order or empty if the Order is not valid.
  *  
+ *  The setters throw a ConvertException for an invalid field. In lenient mode they don't throw, the first error is 
+ *  stored and the next setters are skipped. The message of the error is the same as the message of the exception.
+ *  
  * @author zamek
  *
  */
@@ -30,15 +42,87 @@ public class OrderBuilder implements HasLogger {
 	 */
 	public final static String DATE_FORMAT = "yyyy-MM-dd"; //$NON-NLS-1$
 	
+	/**
+	 * Dates before it are parsed by SimpleDateFormat, because of the Julian calendar 
+	 */
+	private final static int MIN_GREGORIAN_YEAR = 1600;
+	
+	/**
+	 * Max number of cached date strings, the cache is dropped when it is full
+	 */
+	private final static int DATE_CACHE_SIZE = 1024;
+	
+	/**
+	 * Parsed dates shared by all builders. LocalDate is immutable, so a cached value can be used from any thread.
+	 */
+	private final static MemoCache<String, LocalDate> DATE_CACHE = new MemoCache<>(DATE_CACHE_SIZE);
+	
+	/**
+	 * Max number of cached email validation results
+	 */
+	private final static int EMAIL_CACHE_SIZE = 16 * 1024;
+	
+	/**
+	 * Results of the email validation shared by all builders. The same buyer repeats in the items of an order and in 
+	 * many orders, so an email is validated by the regular expressions of EmailValidator only at its first occurrence. 
+	 */
+	private final static MemoCache<String, Boolean> EMAIL_CACHE = new MemoCache<>(EMAIL_CACHE_SIZE);
+	
+	/**
+	 * SimpleDateFormat is not thread safe, every thread has its own instance for the dates missing from the cache
+	 */
+	private final static ThreadLocal<SimpleDateFormat> FORMATTER = ThreadLocal.withInitial(() -> new SimpleDateFormat(DATE_FORMAT));
+	
+	/**
+	 * Message of an unparseable date, the same as the message of the ParseException of SimpleDateFormat
+	 */
+	private final static String UNPARSEABLE_DATE = "Unparseable date: \"%s\""; //$NON-NLS-1$
+	
 	private Order order;
-	private SimpleDateFormat formatter = new SimpleDateFormat(DATE_FORMAT);
+	private boolean lenient;
+	private ConvertError error;
 
 	/**
 	 * Constructor for OrderBuilder
 	 */
 	public OrderBuilder() {
 		this.order = new Order();
-		this.order.setOrderDate(new Date());
+		this.order.setOrderDate(LocalDate.now());
+	}
+	
+	/**
+	 * Switching to lenient mode, the setters store the first error instead of throwing an exception
+	 * 
+	 * @return reference to OrderBuilder
+	 */
+	public OrderBuilder lenient() {
+		this.lenient = true;
+		return this;
+	}
+	
+	/**
+	 * Getting the error of lenient mode
+	 * 
+	 * @return the first error or null if there was no error
+	 */
+	public ConvertError getError() {
+		return this.error;
+	}
+	
+	/**
+	 * Handling an invalid field
+	 * 
+	 * @param code code of the error
+	 * @param detail detail of the error message
+	 * @return reference to OrderBuilder in lenient mode
+	 * @throws ConvertException if the builder is not lenient
+	 */
+	private OrderBuilder error(ErrorCode code, String detail) throws ConvertException {
+		ConvertError e = new ConvertError(code, detail);
+		if (!this.lenient)
+			throw new ConvertException(e.getMessage());
+		this.error = e;
+		return this;
 	}
 	
 	/**
@@ -49,15 +133,35 @@ public class OrderBuilder implements HasLogger {
 	 * @throws ConvertException if id is not a valid number
 	 */
 	public OrderBuilder orderId(String id) throws ConvertException {
+		if (this.error != null)
+			return this;
+		if (id != null && !NumberChecker.isLong(id))
+			return error(ErrorCode.ORDER_ID, NumberChecker.longError(id));
 		try {
 			this.order.setId(Long.valueOf(Long.parseLong(id)));
 		}
 		catch (NumberFormatException e) {
-			throw new ConvertException("OrderId error:"+e.getMessage()); //$NON-NLS-1$
+			return error(ErrorCode.ORDER_ID, e.getMessage());
 		}
 		return this;
 	}
 	
+	/**
+	 * Setting Id for Order from a field of the input buffer
+	 * 
+	 * @param buf input buffer
+	 * @param from first byte of the field
+	 * @param to end of the field (exclusive)
+	 * @return reference to OrderBuilder
+	 * @throws ConvertException if id is not a valid number
+	 */
+	public OrderBuilder orderId(ByteBuffer buf, int from, int to) throws ConvertException {
+		if (this.error != null || !ByteParser.isLong(buf, from, to))
+			return orderId(ByteParser.string(buf, from, to));
+		this.order.setId(Long.valueOf(ByteParser.parseLong(buf, from, to)));
+		return this;
+	}
+	
 	/**
 	 * Setting Buyer's name
 	 * 
@@ -66,8 +170,10 @@ public class OrderBuilder implements HasLogger {
 	 * @throws ConvertException of name is blank
 	 */
 	public OrderBuilder buyerName(String bn) throws ConvertException {
+		if (this.error != null)
+			return this;
 		if (StringUtils.isBlank(bn))
-			throw new ConvertException("Buyer's name is empty"); //$NON-NLS-1$
+			return error(ErrorCode.BUYER_NAME, null);
 		this.order.setBuyerName(bn);
 		return this;
 	}
@@ -80,10 +186,12 @@ public class OrderBuilder implements HasLogger {
 	 * @throws ConvertException if email is blank or not valid
 	 */
  	public OrderBuilder buyerEmail(String e) throws ConvertException {
- 		if (StringUtils.isNotBlank(e) && EmailValidator.getInstance().isValid(e))
+ 		if (this.error != null)
+ 			return this;
+ 		if (StringUtils.isNotBlank(e) && isValidEmail(e))
  			this.order.setBuyerEmail(e);
  		else
- 			throw new ConvertException("email error:"+e); //$NON-NLS-1$
+ 			return error(ErrorCode.BUYER_EMAIL, String.valueOf(e));
  		return this;
  	}
 	
@@ -95,17 +203,82 @@ public class OrderBuilder implements HasLogger {
  	 * @throws ConvertException date is not parseable
  	 */
 	public OrderBuilder orderDate(String d) throws ConvertException {
-		try {
-		this.order.setOrderDate(StringUtils.isBlank(d) 
-				? new Date()
-				: this.formatter.parse(d));
-		}
-		catch (ParseException e) {
-			throw new ConvertException("order date error:"+e.getMessage()); //$NON-NLS-1$
-		}
+		if (this.error != null)
+			return this;
+		LocalDate date = StringUtils.isBlank(d) 
+				? LocalDate.now()
+				: parseDate(d);
+		if (date == null)
+			return error(ErrorCode.ORDER_DATE, String.format(UNPARSEABLE_DATE, d));
+		this.order.setOrderDate(date);
 		return this;
 	}
 	
+	/**
+	 * Parsing a date with the cache of dates.
+	 * 
+	 * Feeds repeat a few dates, so a date is parsed by SimpleDateFormat only at its first occurrence.
+	 * 
+	 * @param d date in DATE_FORMAT
+	 * @return parsed date or null if it is not parseable
+	 */
+	private static LocalDate parseDate(String d) {
+		LocalDate date = DATE_CACHE.get(d);
+		if (date != null)
+			return date;
+		
+		Date parsed = FORMATTER.get().parse(d, new ParsePosition(0));
+		if (parsed == null)
+			return null;
+		date = DateUtils.asLocalDate(parsed);
+		DATE_CACHE.put(d, date);
+		return date;
+	}
+	
+	/**
+	 * Setting date from a field of the input buffer
+	 * 
+	 * Only valid yyyy-MM-dd dates are parsed from bytes, everything else goes through the String version.
+	 * 
+	 * @param buf input buffer
+	 * @param from first byte of the field
+	 * @param to end of the field (exclusive)
+	 * @return reference to OrderBuilder
+	 * @throws ConvertException date is not parseable
+	 */
+	public OrderBuilder orderDate(ByteBuffer buf, int from, int to) throws ConvertException {
+		if (this.error != null || !ByteParser.isDate(buf, from, to))
+			return orderDate(ByteParser.string(buf, from, to));
+		
+		int year = ByteParser.year(buf, from);
+		int month = ByteParser.month(buf, from);
+		int day = ByteParser.day(buf, from);
+		if (year < MIN_GREGORIAN_YEAR || month < 1 || month > 12 || day < 1 || day > YearMonth.of(year, month).lengthOfMonth())
+			return orderDate(ByteParser.string(buf, from, to));
+		
+		this.order.setOrderDate(LocalDate.of(year, month, day));
+		return this;
+	}
+	
+	/**
+	 * Validating an email with the cache of results
+	 * 
+	 * @param e email, not blank
+	 * @return true if the email is valid
+	 */
+	private static boolean isValidEmail(String e) {
+		return EMAIL_CACHE.get(e, k -> Boolean.valueOf(EmailValidator.getInstance().isValid(k))).booleanValue();
+	}
+	
+	/**
+	 * Getting the cache of email validation for statistics
+	 * 
+	 * @return the shared cache of email validation results
+	 */
+	public static MemoCache<String, Boolean> getEmailCache() {
+		return EMAIL_CACHE;
+	}
+	
 	/**
 	 * Setting address
 	 * @param address address from CSV
@@ -120,23 +293,43 @@ public class OrderBuilder implements HasLogger {
 	 * Setting PostCode
 	 * @param pc PostCOde from CSV
 	 * @return reference to OrderBuilder
-	 * @throws NumberFormatException if not parseable
+	 * @throws ConvertException if not parseable
 	 */
-	public OrderBuilder postCode (String pc) throws NumberFormatException {
+	public OrderBuilder postCode (String pc) throws ConvertException {
+		if (this.error != null)
+			return this;
+		if (!NumberChecker.isInt(pc))
+			return error(ErrorCode.POST_CODE_FORMAT, NumberChecker.longError(pc));
 		this.order.setPostCode(Integer.parseInt(pc));
 		return this;
 	}
 	
+	/**
+	 * Setting PostCode from a field of the input buffer
+	 * @param buf input buffer
+	 * @param from first byte of the field
+	 * @param to end of the field (exclusive)
+	 * @return reference to OrderBuilder
+	 * @throws ConvertException if not parseable
+	 */
+	public OrderBuilder postCode (ByteBuffer buf, int from, int to) throws ConvertException {
+		if (this.error != null || !ByteParser.isInt(buf, from, to))
+			return postCode(ByteParser.string(buf, from, to));
+		this.order.setPostCode(ByteParser.parseInt(buf, from, to));
+		return this;
+	}
+	
 	/**
 	 * You can make some restrictions for the item for example min length of name or etc. 
 	 * 
+	 * The email is validated by buyerEmail(), it sets only valid emails.
+	 * 
 	 * @return true if item is correct or false if something went wrong
 	 */
 	private boolean check() {
-		String email = this.order.getBuyerEmail();
 		return this.order.getId() != null 
 				&& StringUtils.isNotBlank(this.order.getBuyerName())
-				&& StringUtils.isNotBlank(email) && EmailValidator.getInstance().isValid(email)
+				&& this.order.getBuyerEmail() != null
 				&& StringUtils.isNotBlank(this.order.getAddress())
 				&& this.order.getPostCode() != null;
 	}
@@ -147,7 +340,7 @@ public class OrderBuilder implements HasLogger {
 	 * @return the nuilt Order or Empty 
 	 */
 	public Optional<Order> get() {
-		return check() ? Optional.of(this.order) : Optional.empty();
+		return this.error == null && check() ? Optional.of(this.order) : Optional.empty();
 	}
 
 }
@@ -46,13 +46,13 @@ public class OrderItem implements HasLogger {
 	private Order order;
 
 	@Column(name=COL_SALE_PRICE, nullable=false)
-	private float salePrice;
+	private long salePrice;
 	
 	@Column(name=COL_SHIPPING_PRICE, nullable=false)
-	private float shippingPrice;
+	private long shippingPrice;
 	
 	@Column(name=COL_TOTAL_ITEM_PRICE, nullable=false)
-	private float totalItemPrice;
+	private long totalItemPrice;
 	
 	@Column(name=COL_SKU, length=50)
 	private String SKU;
@@ -95,33 +95,33 @@ public class OrderItem implements HasLogger {
 
 
 	/**
-	 * @return the salePrice
+	 * @return the salePrice in cents
 	 */
-	public float getSalePrice() {
+	public long getSalePrice() {
 		return this.salePrice;
 	}
 
 
 	/**
-	 * @param salePrice the salePrice to set
+	 * @param salePrice the salePrice in cents to set
 	 */
-	public void setSalePrice(float salePrice) {
+	public void setSalePrice(long salePrice) {
 		this.salePrice = salePrice;
 	}
 
 
 	/**
-	 * @return the shippingPrice
+	 * @return the shippingPrice in cents
 	 */
-	public float getShippingPrice() {
+	public long getShippingPrice() {
 		return this.shippingPrice;
 	}
 
 
 	/**
-	 * @param shippingPrice the shippingPrice to set
+	 * @param shippingPrice the shippingPrice in cents to set
 	 */
-	public void setShippingPrice(float shippingPrice) {
+	public void setShippingPrice(long shippingPrice) {
 		this.shippingPrice = shippingPrice;
 	}
 
@@ -159,16 +159,16 @@ public class OrderItem implements HasLogger {
 
 
 	/**
-	 * @return the totalItemPrice
+	 * @return the totalItemPrice in cents
 	 */
-	public float getTotalItemPrice() {
+	public long getTotalItemPrice() {
 		return this.totalItemPrice;
 	}
 
 	/**
-	 * @param totalItemPrice the totalItemPrice to set
+	 * @param totalItemPrice the totalItemPrice in cents to set
 	 */
-	public void setTotalItemPrice(float totalItemPrice) {
+	public void setTotalItemPrice(long totalItemPrice) {
 		this.totalItemPrice = totalItemPrice;
 	}
 
@@ -183,10 +183,10 @@ public class OrderItem implements HasLogger {
 		result = prime * result + ((this.SKU == null) ? 0 : this.SKU.hashCode());
 		result = prime * result + ((this.id == null) ? 0 : this.id.hashCode());
 		result = prime * result + ((this.order == null) ? 0 : this.order.hashCode());
-		result = prime * result + Float.floatToIntBits(this.salePrice);
-		result = prime * result + Float.floatToIntBits(this.shippingPrice);
+		result = prime * result + (int) (this.salePrice ^ (this.salePrice >>> 32));
+		result = prime * result + (int) (this.shippingPrice ^ (this.shippingPrice >>> 32));
 		result = prime * result + ((this.status == null) ? 0 : this.status.hashCode());
-		result = prime * result + Float.floatToIntBits(this.totalItemPrice);
+		result = prime * result + (int) (this.totalItemPrice ^ (this.totalItemPrice >>> 32));
 		return result;
 	}
 
@@ -218,13 +218,13 @@ public class OrderItem implements HasLogger {
 				return false;
 		} else if (!this.order.equals(other.order))
 			return false;
-		if (Float.floatToIntBits(this.salePrice) != Float.floatToIntBits(other.salePrice))
+		if (this.salePrice != other.salePrice)
 			return false;
-		if (Float.floatToIntBits(this.shippingPrice) != Float.floatToIntBits(other.shippingPrice))
+		if (this.shippingPrice != other.shippingPrice)
 			return false;
 		if (this.status != other.status)
 			return false;
-		if (Float.floatToIntBits(this.totalItemPrice) != Float.floatToIntBits(other.totalItemPrice))
+		if (this.totalItemPrice != other.totalItemPrice)
 			return false;
 		return true;
 	}
@@ -1,77 +1,193 @@
 package com.zamek.wob.domain.orderitem;
 
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
+import com.zamek.wob.domain.ConvertError;
 import com.zamek.wob.domain.ConvertException;
+import com.zamek.wob.domain.ErrorCode;
 import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.util.ByteParser;
 import com.zamek.wob.util.HasLogger;
+import com.zamek.wob.util.Money;
+import com.zamek.wob.util.NumberChecker;
 
 public class OrderItemBuilder implements HasLogger {
 
 	@SuppressWarnings("unused")
 	private final static boolean DEBUG = true;
 	
+	/**
+	 * Minimum sale price in cents
+	 */
+	private final static long MIN_SALE_PRICE = Money.CENTS;
+	
+	/**
+	 * Minimum shipping price in cents
+	 */
+	private final static long MIN_SHIPPING_PRICE = 0;
+	
 	private OrderItem item;
+	private boolean lenient;
+	private ConvertError error;
 	
 	public OrderItemBuilder() {
 		this.item = new OrderItem();
 	}
+	
+	/**
+	 * Switching to lenient mode, the setters store the first error instead of throwing an exception and 
+	 * the next setters are skipped. The message of the error is the same as the message of the exception.
+	 * 
+	 * @return reference to OrderItemBuilder
+	 */
+	public OrderItemBuilder lenient() {
+		this.lenient = true;
+		return this;
+	}
+	
+	/**
+	 * Getting the error of lenient mode
+	 * 
+	 * @return the first error or null if there was no error
+	 */
+	public ConvertError getError() {
+		return this.error;
+	}
+	
+	private OrderItemBuilder error(ErrorCode code, String detail) throws ConvertException {
+		ConvertError e = new ConvertError(code, detail);
+		if (!this.lenient)
+			throw new ConvertException(e.getMessage());
+		this.error = e;
+		return this;
+	}
 
 	public OrderItemBuilder itemId(String id) throws ConvertException {
+		if (this.error != null)
+			return this;
+		if (id != null && !NumberChecker.isLong(id))
+			return error(ErrorCode.ORDER_ITEM_ID, NumberChecker.longError(id));
 		try {
 			long li = Long.parseLong(id);
 			this.item.setId(Long.valueOf(li));
 			
 		}
 		catch (NumberFormatException e) {
-			throw new ConvertException("OrderItemId error:"+e.getMessage()); //$NON-NLS-1$
+			return error(ErrorCode.ORDER_ITEM_ID, e.getMessage());
 		}
 		return this;
 	}
 	
+	public OrderItemBuilder itemId(ByteBuffer buf, int from, int to) throws ConvertException {
+		if (this.error != null || !ByteParser.isLong(buf, from, to))
+			return itemId(ByteParser.string(buf, from, to));
+		this.item.setId(Long.valueOf(ByteParser.parseLong(buf, from, to)));
+		return this;
+	}
+	
 	public OrderItemBuilder order(Order order) {
 		this.item.setOrder(order);
 		return this;
 	}
 
-	public OrderItemBuilder salePrice(String salePrice) throws ConvertException {
-		try {
-			float sp = Float.parseFloat(salePrice);
-			if (sp < 1.0f)
-				throw new ConvertException("salePrice is less than 1.0"); //$NON-NLS-1$
-			this.item.setSalePrice(sp);
-		}
-		catch (NumberFormatException e) {
-			throw new ConvertException("salePrice number format error:"+e.getMessage()); //$NON-NLS-1$
+	/**
+	 * Parsing a price
+	 * 
+	 * @param price text of the price
+	 * @param format error code of a wrong number
+	 * @return the price in cents or Money.INVALID if an error is stored
+	 * @throws ConvertException if the number is wrong and the builder is not lenient
+	 */
+	private long price(String price, ErrorCode format) throws ConvertException {
+		if (price == null || !NumberChecker.isFloat(price)) {
+			error(format, NumberChecker.floatError(price));
+			return Money.INVALID;
 		}
+		long cents = Money.parse(price);
+		if (cents == Money.INVALID)
+			error(format, NumberChecker.floatError(price));
+		return cents;
+	}
+	
+	/**
+	 * Parsing a price field, the rare forms are parsed from a String
+	 * 
+	 * @return the price in cents or Money.INVALID if an error is stored
+	 */
+	private long price(ByteBuffer buf, int from, int to, ErrorCode format) throws ConvertException {
+		if (!Money.isDecimal(buf, from, to))
+			return price(ByteParser.string(buf, from, to), format);
+		return Money.parseDecimal(buf, from, to);
+	}
+	
+	/**
+	 * Storing a parsed sale price
+	 * 
+	 * @param sp rounded price in cents
+	 * @param below true if the exact price is less than the rounded one
+	 */
+	private OrderItemBuilder salePrice(long sp, boolean below) throws ConvertException {
+		if (sp == Money.INVALID)
+			return this;
+		if (sp < MIN_SALE_PRICE || sp == MIN_SALE_PRICE && below)
+			return error(ErrorCode.SALE_PRICE_MIN, null);
+		this.item.setSalePrice(sp);
 		return this;
 	}
 	
-	public OrderItemBuilder shippingPrice(String shippingPrice) throws ConvertException {
-		try {
-			float sp = Float.parseFloat(shippingPrice);
-			if (sp<0.0f)
-				throw new ConvertException("shippingPrice is less than 0.0"); //$NON-NLS-1$
-			this.item.setShippingPrice(sp);
-			
-		}
-		catch (NumberFormatException e) {
-			throw new ConvertException("shippingPrice number format error:"+e.getMessage()); //$NON-NLS-1$
-		}
+	public OrderItemBuilder salePrice(String salePrice) throws ConvertException {
+		if (this.error != null)
+			return this;
+		long sp = price(salePrice, ErrorCode.SALE_PRICE_FORMAT);
+		return salePrice(sp, sp == MIN_SALE_PRICE && Money.compare(salePrice, sp) < 0);
+	}
+	
+	public OrderItemBuilder salePrice(ByteBuffer buf, int from, int to) throws ConvertException {
+		if (this.error != null)
+			return this;
+		long sp = price(buf, from, to, ErrorCode.SALE_PRICE_FORMAT);
+		return salePrice(sp, sp == MIN_SALE_PRICE && Money.compare(buf, from, to, sp) < 0);
+	}
+	
+	/**
+	 * Storing a parsed shipping price
+	 * 
+	 * @param sp rounded price in cents
+	 * @param below true if the exact price is less than the rounded one
+	 */
+	private OrderItemBuilder shippingPrice(long sp, boolean below) throws ConvertException {
+		if (sp == Money.INVALID)
+			return this;
+		if (sp < MIN_SHIPPING_PRICE || sp == MIN_SHIPPING_PRICE && below)
+			return error(ErrorCode.SHIPPING_PRICE_MIN, null);
+		this.item.setShippingPrice(sp);
 		return this;
 	}
 	
+	public OrderItemBuilder shippingPrice(String shippingPrice) throws ConvertException {
+		if (this.error != null)
+			return this;
+		long sp = price(shippingPrice, ErrorCode.SHIPPING_PRICE_FORMAT);
+		return shippingPrice(sp, sp == MIN_SHIPPING_PRICE && Money.compare(shippingPrice, sp) < 0);
+	}
+	
+	public OrderItemBuilder shippingPrice(ByteBuffer buf, int from, int to) throws ConvertException {
+		if (this.error != null)
+			return this;
+		long sp = price(buf, from, to, ErrorCode.SHIPPING_PRICE_FORMAT);
+		return shippingPrice(sp, sp == MIN_SHIPPING_PRICE && Money.compare(buf, from, to, sp) < 0);
+	}
+	
 	public OrderItemBuilder totalItemPrice(String totalItemPrice) throws ConvertException {
-		try {
-			float tp = Float.parseFloat(totalItemPrice);
-			if (tp<=1.0f)
-				throw new ConvertException("totalItemPrice is less than 1.0"); //$NON-NLS-1$
-				
-			this.item.setTotalItemPrice(tp);
-		}
-		catch (NumberFormatException e) {
-			throw new ConvertException("totalItemPrice number format error:"+e.getMessage()); //$NON-NLS-1$
-		}
+		if (this.error != null)
+			return this;
+		long tp = price(totalItemPrice, ErrorCode.TOTAL_ITEM_PRICE_FORMAT);
+		if (tp == Money.INVALID)
+			return this;
+		if (tp < MIN_SALE_PRICE || tp == MIN_SALE_PRICE && Money.compare(totalItemPrice, tp) <= 0)
+			return error(ErrorCode.TOTAL_ITEM_PRICE_MIN, null);
+		this.item.setTotalItemPrice(tp);
 		return this;
 	}
 	
@@ -81,7 +197,24 @@ public class OrderItemBuilder implements HasLogger {
 	}
 	
 	public OrderItemBuilder status(String status) throws ConvertException {
-		this.item.setStatus(OrderItemStatus.byString(status));
+		if (this.error != null)
+			return this;
+		OrderItemStatus st = OrderItemStatus.find(status);
+		if (st == null)
+			return error(ErrorCode.STATUS, status);
+		this.item.setStatus(st);
+		return this;
+	}
+
+	public OrderItemBuilder status(ByteBuffer buf, int from, int to) throws ConvertException {
+		if (this.error != null)
+			return this;
+		if (ByteParser.equalsIgnoreCase(buf, from, to, OrderItemStatus.ST_IN_STOCK))
+			this.item.setStatus(OrderItemStatus.IN_STOCK);
+		else if (ByteParser.equalsIgnoreCase(buf, from, to, OrderItemStatus.ST_OUT_OF_STOCK))
+			this.item.setStatus(OrderItemStatus.OUT_OF_STOCK);
+		else
+			return status(ByteParser.string(buf, from, to));
 		return this;
 	}
 
@@ -93,9 +226,9 @@ public class OrderItemBuilder implements HasLogger {
 	private boolean check() {
 		return this.item.getOrder() != null
 				&& this.item.getId() != null 
-				&& this.item.getSalePrice() >= 1.0f
-				&& this.item.getShippingPrice() >= 0.0f
-				&& this.item.getTotalItemPrice() >= 0.0f
+				&& this.item.getSalePrice() >= MIN_SALE_PRICE
+				&& this.item.getShippingPrice() >= MIN_SHIPPING_PRICE
+				&& this.item.getTotalItemPrice() >= 0
 				&& this.item.getStatus() != null;
 	}
 	
@@ -104,7 +237,7 @@ public class OrderItemBuilder implements HasLogger {
 	}
 	
 	public Optional<OrderItem> get() {
-		if (!check())
+		if (this.error != null || !check())
 			return Optional.empty();
 		
 		postCalculation();
@@ -27,10 +27,23 @@ public enum OrderItemStatus {
 	public final static String ST_OUT_OF_STOCK = "OUTOFSTOCK"; //$NON-NLS-1$
 
 	public static OrderItemStatus byString(String st) throws ConvertException {
+		OrderItemStatus status = find(st);
+		if (status == null)
+			throw new ConvertException("Unknown orderitem status:"+st); //$NON-NLS-1$
+		return status;
+	}
+	
+	/**
+	 * Exception free form of byString
+	 * 
+	 * @param st name of the status
+	 * @return the status or null if st is unknown
+	 */
+	public static OrderItemStatus find(String st) {
 		switch (st.toUpperCase()) {
 		case ST_IN_STOCK : return OrderItemStatus.IN_STOCK;
 		case ST_OUT_OF_STOCK : return OrderItemStatus.OUT_OF_STOCK;
-		default : throw new ConvertException("Unknown orderitem status:"+st); //$NON-NLS-1$
+		default : return null;
 		}
 	}
 	
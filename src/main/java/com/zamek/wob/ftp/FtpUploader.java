@@ -1,10 +1,32 @@
 package com.zamek.wob.ftp;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
@@ -12,15 +34,18 @@ import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPClientConfig;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.io.CopyStreamEvent;
+import org.apache.commons.net.io.Util;
 
 import com.zamek.wob.Consts;
 import com.zamek.wob.config.Config;
 import com.zamek.wob.util.HasLogger;
+import com.zamek.wob.util.TailInputStream;
 
 /**
- * Ftp uploader 
- * 
- * <p>This class can upload the given file to an ftp server. Ftp server can be configurable in the application.properties.</p> 
+ * Ftp uploader
+ *
+ * <p>This class can upload the given file to an ftp server. Ftp server can be configurable in the application.properties.</p>
  * <p>Parameters are:</p>
  * <ul>
  * 		<li>ftp.user</li>
@@ -28,90 +53,627 @@ import com.zamek.wob.util.HasLogger;
  * 		<li>ftp.port</li>
  * 		<li>ftp.language</li>
  * 		<li>ftp.timezone</li>
+ * 		<li>ftp.streaming</li>
+ * 		<li>ftp.compress</li>
+ * 		<li>ftp.buffersize</li>
+ * 		<li>ftp.attempts</li>
+ * 		<li>ftp.backoff</li>
+ * 		<li>ftp.maxbackoff</li>
+ * 		<li>ftp.resume</li>
+ * 		<li>ftp.timeout</li>
+ * 		<li>ftp.connections</li>
+ * 		<li>ftp.partsize</li>
  * </ul>
- * Default values are int Consts 
+ * Default values are int Consts
+ *
+ * <p>A failed upload is retried with exponential backoff. If the stream supports mark and reset, a retry in binary
+ * mode continues from the size of the remote file with REST and APPE, so the confirmed bytes are not sent again.
+ * A retry in ascii mode sends the stream again from the beginning.</p>
+ *
+ * <p>A file larger than ftp.partsize is uploaded in parts on ftp.connections parallel connections if it is more
+ * than 1, a manifest with the checksums of the parts is uploaded after the parts. The parts are uploaded in binary
+ * mode, so the remote parts have the bytes of the checksums.</p>
+ *
  * @see com.zamek.wob.Consts
- *   
+ *
  * @author zamek
  *
  */
 public class FtpUploader implements HasLogger {
 
 	private final static boolean DEBUG = true;
-	
+
+	/**
+	 * Suffix of the remote name of a compressed upload
+	 */
+	public final static String GZ_SUFFIX = ".gz"; //$NON-NLS-1$
+
+	/**
+	 * Size of a remote file command (RFC 3659)
+	 */
+	private final static String SIZE = "SIZE"; //$NON-NLS-1$
+
+	/**
+	 * Format of the remote name of a part: name of the file and index of the part from 1
+	 */
+	private final static String PART_FORMAT = "%s.part%04d"; //$NON-NLS-1$
+
+	/**
+	 * Suffix of the remote name of the manifest of a parallel upload
+	 */
+	public final static String MANIFEST_SUFFIX = ".manifest"; //$NON-NLS-1$
+
+	public final static String CHECKSUM_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+	/**
+	 * Header of the manifest, a line per part
+	 */
+	public final static String MANIFEST_HEADER = "Part;Offset;Length;" + CHECKSUM_ALGORITHM; //$NON-NLS-1$
+
+	private final static int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Login error, it is not retried
+	 */
+	private final static class LoginException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		LoginException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Source of an upload, it records the reading errors which are not retried
+	 */
+	private final static class Source extends FilterInputStream {
+		long consumed;
+		IOException failure;
+
+		Source(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				int b = super.read();
+				if (b >= 0)
+					++this.consumed;
+				return b;
+			}
+			catch (IOException e) {
+				this.failure = e;
+				throw e;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				int n = this.in.read(b, off, len);
+				if (n > 0)
+					this.consumed += n;
+				return n;
+			}
+			catch (IOException e) {
+				this.failure = e;
+				throw e;
+			}
+		}
+
+		/**
+		 * Skipping the bytes of a resumed upload
+		 *
+		 * @param n number of bytes
+		 * @throws IOException if the stream is shorter
+		 */
+		void skipFully(long n) throws IOException {
+			for (long remaining = n; remaining > 0; ) {
+				long k = skip(remaining);
+				if (k <= 0) {
+					if (read() < 0)
+						throw new EOFException("Stream is shorter than the remote file"); //$NON-NLS-1$
+					k = 1;
+				}
+				remaining -= k;
+			}
+		}
+	}
+
+	/**
+	 * A part of a stream, it supports mark and reset if the stream supports them
+	 */
+	private final static class Part extends FilterInputStream {
+		private long remaining;
+		private long marked;
+
+		Part(InputStream in, long length) {
+			super(in);
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.remaining <= 0)
+				return -1;
+			int b = this.in.read();
+			if (b >= 0)
+				--this.remaining;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this.remaining <= 0)
+				return -1;
+			int n = this.in.read(b, off, (int) Math.min(len, this.remaining));
+			if (n > 0)
+				this.remaining -= n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long k = this.in.skip(Math.min(n, this.remaining));
+			this.remaining -= k;
+			return k;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(this.in.available(), this.remaining);
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) {
+			this.in.mark(readlimit);
+			this.marked = this.remaining;
+		}
+
+		@Override
+		public synchronized void reset() throws IOException {
+			this.in.reset();
+			this.remaining = this.marked;
+		}
+	}
+
+	/**
+	 * Stream which drops its first bytes, a resumed compressed upload doesn't send again the bytes of the remote file
+	 */
+	private final static class SkipOutputStream extends FilterOutputStream {
+		private long skip;
+
+		SkipOutputStream(OutputStream out, long skip) {
+			super(out);
+			this.skip = skip;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (this.skip > 0)
+				--this.skip;
+			else
+				this.out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			int k = (int) Math.min(len, this.skip);
+			this.skip -= k;
+			if (len > k)
+				this.out.write(b, off + k, len - k);
+		}
+	}
+
 	private String fileName;
 	private String hostUrl;
 	private int hostPort;
 	private String user;
 	private String password;
-	
+	private String language;
+	private String timeZone;
+	private boolean compress;
+	private int bufferSize;
+	private int attempts;
+	private long backoff;
+	private long maxBackoff;
+	private boolean resume;
+	private int timeout;
+	private int connections;
+	private long partSize;
+
 	/**
 	 * Constructor for FtpUploader.
-	 * 
+	 *
 	 * @param fileName name of the file to upload
 	 */
 	public FtpUploader(String fileName) {
+		this(fileName, Config.getInstance().getConfig());
+	}
+
+	/**
+	 * Constructor for FtpUploader.
+	 *
+	 * @param fileName name of the file to upload
+	 * @param cfg configuration of the ftp server
+	 */
+	public FtpUploader(String fileName, Configuration cfg) {
 		this.fileName = fileName;
-		Configuration cfg = Config.getInstance().getConfig();
 		this.hostUrl = cfg.getString(Consts.FTP_CONFIG_KEY_HOST);
 		this.hostPort = cfg.getInt(Consts.FTP_CONFIG_KEY_PORT, Consts.FTP_CONFIG_DEF_PORT);
-		this.user = cfg.getString(Consts.FTP_CONFIG_DEF_USER, Consts.FTP_CONFIG_DEF_USER);
+		this.user = cfg.getString(Consts.FTP_CONFIG_KEY_USER, Consts.FTP_CONFIG_DEF_USER);
 		this.password = cfg.getString(Consts.FTP_CONFIG_KEY_PASSWORD, Consts.FTP_CONFIG_DEF_PASSWORD);
+		this.language = cfg.getString(Consts.FTP_CONFIG_KEY_LANGUAGE, Consts.FTP_CONFIG_DEF_LANGUAGE);
+		this.timeZone = cfg.getString(Consts.FTP_CONFIG_KEY_TIME_ZONE, Consts.FTP_CONFIG_DEF_TIME_ZONE);
+		this.compress = cfg.getBoolean(Consts.FTP_CONFIG_KEY_COMPRESS, Consts.FTP_CONFIG_DEF_COMPRESS);
+		this.bufferSize = cfg.getInt(Consts.FTP_CONFIG_KEY_BUFFER_SIZE, Consts.FTP_CONFIG_DEF_BUFFER_SIZE);
+		this.attempts = Math.max(1, cfg.getInt(Consts.FTP_CONFIG_KEY_ATTEMPTS, Consts.FTP_CONFIG_DEF_ATTEMPTS));
+		this.backoff = cfg.getLong(Consts.FTP_CONFIG_KEY_BACKOFF, Consts.FTP_CONFIG_DEF_BACKOFF);
+		this.maxBackoff = cfg.getLong(Consts.FTP_CONFIG_KEY_MAX_BACKOFF, Consts.FTP_CONFIG_DEF_MAX_BACKOFF);
+		this.resume = cfg.getBoolean(Consts.FTP_CONFIG_KEY_RESUME, Consts.FTP_CONFIG_DEF_RESUME);
+		this.timeout = cfg.getInt(Consts.FTP_CONFIG_KEY_TIMEOUT, Consts.FTP_CONFIG_DEF_TIMEOUT);
+		this.connections = cfg.getInt(Consts.FTP_CONFIG_KEY_CONNECTIONS, Consts.FTP_CONFIG_DEF_CONNECTIONS);
+		this.partSize = Math.max(1, cfg.getLong(Consts.FTP_CONFIG_KEY_PART_SIZE, Consts.FTP_CONFIG_DEF_PART_SIZE));
 	}
-	
+
 	/**
 	 * Start uploading.
-	 * 
-	 * 
+	 *
+	 * <p>The file is uploaded in parts parallel if it is larger than ftp.partsize and ftp.connections is more
+	 * than 1.</p>
+	 *
 	 * @throws Exception if connection error or login error or any other file handling error happend.
-	 * 
+	 *
 	 */
 	public void upload() throws Exception {
 		Path path = Paths.get(this.fileName);
-		if (Files.notExists(path)) 
+		if (Files.notExists(path))
 			throw new IOException(String.format("%s file is not exists", this.fileName)); //$NON-NLS-1$
-		
+
+		if (this.connections > 1 && Files.size(path) > this.partSize) {
+			uploadParts(path, Files.size(path));
+			return;
+		}
+		try (TailInputStream in = new TailInputStream(path)) {
+			in.finish();
+			upload(in);
+		}
+	}
+
+	/**
+	 * Uploading a stream with the name of the file.
+	 *
+	 * <p>The data channel is open until the end of the stream, so it can be a TailInputStream of a file which
+	 * is being written, then the upload runs parallel with the writer.</p>
+	 *
+	 * <p>If ftp.compress is set the stream is compressed with gzip on the fly and it is uploaded in binary mode
+	 * with .gz suffix, otherwise it is uploaded in ascii mode.</p>
+	 *
+	 * <p>A broken upload is retried maximum ftp.attempts times, the wait before the retries starts from ftp.backoff
+	 * and it is doubled until ftp.maxbackoff. If the stream supports mark and reset, the retry starts the stream 
+	 * again. If ftp.resume is set too and the upload is in binary mode, the retry continues after the bytes of the 
+	 * remote file: a compressed stream is compressed again from the beginning and the bytes of the remote file are dropped. 
+	 * A stream without mark is retried only if nothing was read from it. Login errors and the errors of the stream 
+	 * are not retried.</p>
+	 *
+	 * <p>An ascii upload is never resumed, the size of the remote file is not the offset of the stream if the server
+	 * stores the lines with \r\n.</p>
+	 *
+	 * @param in content of the file
+	 * @throws Exception if connection error or login error or the stream cannot be read or stored
+	 */
+	public void upload(InputStream in) throws Exception {
+		upload(in, this.compress ? this.fileName + GZ_SUFFIX : this.fileName, this.compress, this.compress, null);
+	}
+
+	/**
+	 * Uploading a large file in parts parallel
+	 *
+	 * <p>The file is split into parts of ftp.partsize bytes, they are uploaded as name.partNNNN (with .gz suffix if
+	 * ftp.compress is set) on maximum ftp.connections connections. The logged in connections are reused by the
+	 * parts. Every part is uploaded in binary mode and it is retried like a single binary upload. When all parts are 
+	 * uploaded a name.manifest file is uploaded with the names, offsets, lengths and SHA-256 checksums of the parts, 
+	 * the checksums are computed from the uncompressed bytes of the local file. The manifest is written last, so it 
+	 * marks a complete upload.</p>
+	 *
+	 * @param path path of the file
+	 * @param size size of the file
+	 * @throws Exception if a part or the manifest cannot be uploaded
+	 */
+	private void uploadParts(Path path, long size) throws Exception {
+		int parts = (int) ((size + this.partSize - 1) / this.partSize);
+		getLogger().info("Uploading {} in {} parts on {} connections", this.fileName, Integer.valueOf(parts), //$NON-NLS-1$
+				Integer.valueOf(Math.min(parts, this.connections)));
+		BlockingQueue<FTPClient> pool = new LinkedBlockingQueue<>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parts, this.connections));
+		try {
+			List<Future<String>> checksums = new ArrayList<>(parts);
+			for (int i = 0; i < parts; ++i) {
+				long offset = i * this.partSize;
+				long length = Math.min(this.partSize, size - offset);
+				String remote = partName(i + 1);
+				checksums.add(executor.submit(() -> uploadPart(path, offset, length, remote, pool)));
+			}
+
+			StringBuilder manifest = new StringBuilder(MANIFEST_HEADER).append(Consts.RECORD_SEPARATOR);
+			for (int i = 0; i < parts; ++i) {
+				long offset = i * this.partSize;
+				String checksum;
+				try {
+					checksum = checksums.get(i).get();
+				}
+				catch (ExecutionException e) {
+					throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+				manifest.append(partName(i + 1)).append(Consts.FIELD_DELIMITER)
+						.append(offset).append(Consts.FIELD_DELIMITER)
+						.append(Math.min(this.partSize, size - offset)).append(Consts.FIELD_DELIMITER)
+						.append(checksum).append(Consts.RECORD_SEPARATOR);
+			}
+			upload(new ByteArrayInputStream(manifest.toString().getBytes(StandardCharsets.US_ASCII)),
+					this.fileName + MANIFEST_SUFFIX, false, false, pool);
+		}
+		finally {
+			executor.shutdownNow();
+			executor.awaitTermination(this.timeout, TimeUnit.MILLISECONDS);
+			for (FTPClient ftp = pool.poll(); ftp != null; ftp = pool.poll()) {
+				try {
+					ftp.logout();
+				}
+				catch (IOException e) {
+					getLogger().debug("Logout error: {}", e.getMessage()); //$NON-NLS-1$
+				}
+				close(ftp);
+			}
+		}
+	}
+
+	/**
+	 * Uploading a part of a file
+	 *
+	 * @param path path of the file
+	 * @param offset first byte of the part
+	 * @param length length of the part
+	 * @param remote name of the remote file
+	 * @param pool idle logged in connections
+	 * @return SHA-256 checksum of the part in hexadecimal
+	 * @throws IOException if the part cannot be read or uploaded
+	 */
+	private String uploadPart(Path path, long offset, long length, String remote, BlockingQueue<FTPClient> pool) throws IOException {
+		String checksum = checksum(path, offset, length);
+		try (TailInputStream in = new TailInputStream(path)) {
+			in.finish();
+			for (long remaining = offset; remaining > 0; ) {
+				long k = in.skip(remaining);
+				if (k <= 0)
+					throw new EOFException("File is shorter than the part "+remote); //$NON-NLS-1$
+				remaining -= k;
+			}
+			upload(new Part(in, length), remote, this.compress, true, pool);
+		}
+		return checksum;
+	}
+
+	/**
+	 * Uploading a stream with retries
+	 *
+	 * @param in content of the remote file
+	 * @param remote name of the remote file
+	 * @param compressed true if the content is compressed
+	 * @param binary true if the content is uploaded in binary mode, it must be set for a compressed content
+	 * @param pool idle logged in connections, or null if every attempt has its own connection
+	 * @throws IOException if connection error or login error or the stream cannot be read or stored
+	 */
+	private void upload(InputStream in, String remote, boolean compressed, boolean binary, BlockingQueue<FTPClient> pool) throws IOException {
+		Source source = new Source(in);
+		boolean markable = in.markSupported();
+		if (markable)
+			in.mark(Integer.MAX_VALUE);
+		boolean resumable = this.resume && binary && markable;
+		long delay = this.backoff;
+		for (int attempt = 1; ; ++attempt) {
+			FTPClient ftp = pool == null ? null : pool.poll();
+			try {
+				if (ftp == null)
+					ftp = connect();
+				if (markable && attempt > 1)
+					source.reset();
+				store(ftp, source, remote, compressed, binary, resumable && attempt > 1);
+				if (pool != null) {
+					pool.add(ftp);
+					ftp = null;
+				}
+				else
+					ftp.logout();
+				return;
+			}
+			catch (IOException e) {
+				if (e instanceof LoginException || source.failure != null || attempt >= this.attempts
+						|| (!markable && source.consumed > 0))
+					throw e;
+				getLogger().warn("Upload of {} failed (attempt {} of {}): {}, retrying in {} ms", remote,  //$NON-NLS-1$
+						Integer.valueOf(attempt), Integer.valueOf(this.attempts), e.getMessage(), Long.valueOf(delay));
+			}
+			finally {
+				close(ftp);
+			}
+			try {
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Upload of "+remote+" is interrupted"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			delay = Math.min(delay * 2, this.maxBackoff);
+		}
+	}
+
+	/**
+	 * Opening a logged in connection
+	 *
+	 * @return connected client
+	 * @throws IOException if connection error or login error
+	 */
+	private FTPClient connect() throws IOException {
 		FTPClient ftp = new FTPClient();
-		
+
 		FTPClientConfig config = setFtpConfig();
 		ftp.configure(config );
+		ftp.setConnectTimeout(this.timeout);
+		ftp.setDefaultTimeout(this.timeout);
+		ftp.setDataTimeout(this.timeout);
 		try {
 		      int reply;
 		      ftp.connect(this.hostUrl, this.hostPort);
-		      if (DEBUG) 
+		      if (DEBUG)
 		    	  getLogger().debug(String.format("Connected to %s, reply:%s", this.hostUrl, ftp.getReplyString())); //$NON-NLS-1$
 
 		      reply = ftp.getReplyCode();
 
 		      if(!FTPReply.isPositiveCompletion(reply)) {
-		    	  ftp.disconnect();
 		    	  throw new IOException(String.format("Ftp Server at %s said %s", this.hostUrl, Integer.valueOf(reply))); //$NON-NLS-1$
 		      }
-		      
+
 		      if (!StringUtils.isBlank(this.user) &&  !ftp.login(this.user, this.password)) {
-		    	  ftp.disconnect();
-		    	  throw new IOException(String.format("FTP Authentication error with %s user", this.user)); //$NON-NLS-1$
+		    	  throw new LoginException(String.format("FTP Authentication error with %s user", this.user)); //$NON-NLS-1$
 		      }
-		    
-		      ftp.setFileType(FTP.ASCII_FILE_TYPE);
-		      
-		      try (InputStream in = Files.newInputStream(path)) {
-		    	  ftp.storeFile(this.fileName, in);
-		      }
-		 }
-		finally {
-			ftp.logout();
+		      return ftp;
+		}
+		catch (IOException e) {
+			close(ftp);
+			throw e;
 		}
 	}
-	
-	private static FTPClientConfig setFtpConfig() {
-		Configuration cfg = Config.getInstance().getConfig();
+
+	/**
+	 * Storing a stream on a connection
+	 *
+	 * @param ftp logged in client
+	 * @param source content of the remote file
+	 * @param remote name of the remote file
+	 * @param compressed true if the content is compressed
+	 * @param binary true if the content is uploaded in binary mode
+	 * @param resumed true if the upload continues from the size of the remote file
+	 * @throws IOException if the connection is broken or the stream cannot be read or stored
+	 */
+	private void store(FTPClient ftp, Source source, String remote, boolean compressed, boolean binary, boolean resumed) throws IOException {
+		ftp.setFileType(binary ? FTP.BINARY_FILE_TYPE : FTP.ASCII_FILE_TYPE);
+		ftp.setBufferSize(this.bufferSize);
+
+		long offset = 0;
+		if (resumed) {
+			offset = remoteSize(ftp, remote);
+			if (!compressed)
+				source.skipFully(offset);
+			getLogger().info("Resuming upload of {} from {} bytes", remote, Long.valueOf(offset)); //$NON-NLS-1$
+		}
+
+		OutputStream out;
+		if (offset > 0) {
+			ftp.setRestartOffset(offset);
+			out = ftp.appendFileStream(remote);
+		}
+		else
+			out = ftp.storeFileStream(remote);
+		if (out == null)
+			throw new IOException(String.format("Ftp Server at %s cannot store %s: %s", this.hostUrl, remote, ftp.getReplyString())); //$NON-NLS-1$
+
+		TransferRateListener listener = new TransferRateListener(remote);
+		try (OutputStream target = compressed ? new GZIPOutputStream(new SkipOutputStream(out, offset), this.bufferSize) : out) {
+			Util.copyStream(source, target, this.bufferSize, CopyStreamEvent.UNKNOWN_STREAM_SIZE, listener, false);
+		}
+		if (!ftp.completePendingCommand())
+			throw new IOException(String.format("Ftp Server at %s cannot store %s: %s", this.hostUrl, remote, ftp.getReplyString())); //$NON-NLS-1$
+		listener.report();
+	}
+
+	/**
+	 * Closing a connection without logout, the errors are dropped
+	 *
+	 * @param ftp client or null
+	 */
+	private void close(FTPClient ftp) {
+		if (ftp != null && ftp.isConnected()) {
+			try {
+				ftp.disconnect();
+			}
+			catch (IOException e) {
+				getLogger().debug("Disconnect error: {}", e.getMessage()); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * @param part index of the part from 1
+	 * @return remote name of the part
+	 */
+	private String partName(int part) {
+		return String.format(PART_FORMAT, this.fileName, Integer.valueOf(part)) + (this.compress ? GZ_SUFFIX : ""); //$NON-NLS-1$
+	}
+
+	/**
+	 * Computing the checksum of a part
+	 *
+	 * @param path path of the file
+	 * @param offset first byte of the part
+	 * @param length length of the part
+	 * @return SHA-256 checksum in hexadecimal
+	 * @throws IOException if the file cannot be read
+	 */
+	private static String checksum(Path path, long offset, long length) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buf = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+			for (long pos = offset, end = offset + length; pos < end; ) {
+				buf.clear();
+				buf.limit((int) Math.min(buf.capacity(), end - pos));
+				int n = channel.read(buf, pos);
+				if (n < 0)
+					throw new EOFException("File is shorter than the part at "+offset); //$NON-NLS-1$
+				buf.flip();
+				digest.update(buf);
+				pos += n;
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest())
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return sb.toString();
+	}
+
+	/**
+	 * Getting the size of the remote file with the SIZE command
+	 *
+	 * @param ftp connected client
+	 * @param remote name of the remote file
+	 * @return size of the remote file or 0 if it is unknown
+	 * @throws IOException if the connection is broken
+	 */
+	private long remoteSize(FTPClient ftp, String remote) throws IOException {
+		if (ftp.sendCommand(SIZE, remote) != FTPReply.FILE_STATUS) {
+			getLogger().warn("Size of {} is unknown: {}", remote, ftp.getReplyString()); //$NON-NLS-1$
+			return 0;
+		}
+		try {
+			return Long.parseLong(ftp.getReplyString().substring(4).trim());
+		}
+		catch (NumberFormatException | IndexOutOfBoundsException e) {
+			getLogger().warn("Size of {} is unknown: {}", remote, ftp.getReplyString()); //$NON-NLS-1$
+			return 0;
+		}
+	}
+
+	private FTPClientConfig setFtpConfig() {
 		FTPClientConfig ftpCfg = new FTPClientConfig(FTPClientConfig.SYST_UNIX);
-		String lang = cfg.getString(Consts.FTP_CONFIG_KEY_LANGUAGE, Consts.FTP_CONFIG_DEF_LANGUAGE);
-		ftpCfg.setServerLanguageCode(lang);
-		
-		String timeZone = cfg.getString(Consts.FTP_CONFIG_KEY_TIME_ZONE, Consts.FTP_CONFIG_DEF_TIME_ZONE);
-		ftpCfg.setServerTimeZoneId(timeZone);
+		ftpCfg.setServerLanguageCode(this.language);
+		ftpCfg.setServerTimeZoneId(this.timeZone);
 
 		return ftpCfg;
 	}
@@ -0,0 +1,83 @@
+package com.zamek.wob.ftp;
+
+import org.apache.commons.net.io.CopyStreamEvent;
+import org.apache.commons.net.io.CopyStreamListener;
+
+import com.zamek.wob.util.HasLogger;
+
+/**
+ * Progress of an upload.
+ *
+ * <p>It logs the transferred bytes and the rate in bytes per second periodically and at the end of the upload.</p>
+ *
+ * @author zamek
+ *
+ */
+public class TransferRateListener implements CopyStreamListener, HasLogger {
+
+	/**
+	 * Default period of the progress messages in milliseconds
+	 */
+	public final static long DEF_PERIOD_MILLIS = 5000;
+
+	private final String name;
+	private final long periodMillis;
+	private final long start;
+	private long next;
+	private volatile long total;
+
+	/**
+	 * Constructor of TransferRateListener
+	 *
+	 * @param name name of the uploaded file
+	 */
+	public TransferRateListener(String name) {
+		this(name, DEF_PERIOD_MILLIS);
+	}
+
+	/**
+	 * Constructor of TransferRateListener
+	 *
+	 * @param name name of the uploaded file
+	 * @param periodMillis period of the progress messages in milliseconds
+	 */
+	public TransferRateListener(String name, long periodMillis) {
+		this.name = name;
+		this.periodMillis = periodMillis;
+		this.start = System.currentTimeMillis();
+		this.next = this.start + periodMillis;
+	}
+
+	@Override
+	public void bytesTransferred(CopyStreamEvent event) {
+		bytesTransferred(event.getTotalBytesTransferred(), event.getBytesTransferred(), event.getStreamSize());
+	}
+
+	@Override
+	public void bytesTransferred(long totalBytesTransferred, int bytesTransferred, long streamSize) {
+		this.total = totalBytesTransferred;
+		long now = System.currentTimeMillis();
+		if (now >= this.next) {
+			this.next = now + this.periodMillis;
+			getLogger().info("Uploading {}: {} bytes, {} bytes/s", this.name, Long.valueOf(totalBytesTransferred), Long.valueOf(getRate(now))); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Logging the result of the finished upload
+	 */
+	public void report() {
+		getLogger().info("Uploaded {}: {} bytes, {} bytes/s", this.name, Long.valueOf(this.total), Long.valueOf(getRate(System.currentTimeMillis()))); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return number of transferred bytes
+	 */
+	public long getTotal() {
+		return this.total;
+	}
+
+	private long getRate(long now) {
+		return this.total * 1000 / Math.max(1, now - this.start);
+	}
+}
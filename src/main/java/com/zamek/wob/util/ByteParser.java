@@ -0,0 +1,178 @@
+package com.zamek.wob.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parsers for ASCII fields in a byte buffer.
+ *
+ * <p>Fields are given with their [from, to) offsets in the buffer, the methods don't create intermediate Strings.
+ * The isXXX methods accept only the simple forms which can be converted exactly with the parseXXX methods,
+ * everything else must be parsed from a String by the caller.</p>
+ *
+ * @author zamek
+ */
+public class ByteParser {
+
+	private final static int MAX_INT_DIGITS = 9;
+
+	private final static int MAX_LONG_DIGITS = 18;
+
+	/**
+	 * Length of the yyyy-MM-dd format
+	 */
+	public final static int DATE_LENGTH = 10;
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static boolean isSign(byte b) {
+		return b == '-' || b == '+';
+	}
+
+	private static boolean isInteger(ByteBuffer buf, int from, int to, int maxDigits) {
+		int start = from < to && isSign(buf.get(from)) ? from + 1 : from;
+		if (start == to || to - start > maxDigits)
+			return false;
+		for (int i = start; i < to; ++i)
+			if (!isDigit(buf.get(i)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Checks an int field
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @return true if the field is an optional sign and maximum 9 digits
+	 */
+	public static boolean isInt(ByteBuffer buf, int from, int to) {
+		return isInteger(buf, from, to, MAX_INT_DIGITS);
+	}
+
+	/**
+	 * Checks a long field
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @return true if the field is an optional sign and maximum 18 digits
+	 */
+	public static boolean isLong(ByteBuffer buf, int from, int to) {
+		return isInteger(buf, from, to, MAX_LONG_DIGITS);
+	}
+
+	/**
+	 * Parses a field which is checked by isInt
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @return value of field
+	 */
+	public static int parseInt(ByteBuffer buf, int from, int to) {
+		return (int) parseLong(buf, from, to);
+	}
+
+	/**
+	 * Parses a field which is checked by isLong
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @return value of field
+	 */
+	public static long parseLong(ByteBuffer buf, int from, int to) {
+		boolean negative = buf.get(from) == '-';
+		int start = isSign(buf.get(from)) ? from + 1 : from;
+		long result = 0;
+		for (int i = start; i < to; ++i)
+			result = result * 10 + (buf.get(i) - '0');
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Checks a yyyy-MM-dd date field
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @return true if the field has the yyyy-MM-dd form
+	 */
+	public static boolean isDate(ByteBuffer buf, int from, int to) {
+		if (to - from != DATE_LENGTH || buf.get(from + 4) != '-' || buf.get(from + 7) != '-')
+			return false;
+		for (int i = 0; i < DATE_LENGTH; ++i)
+			if (i != 4 && i != 7 && !isDigit(buf.get(from + i)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @param buf buffer
+	 * @param from first byte of a field checked by isDate
+	 * @return year part of date
+	 */
+	public static int year(ByteBuffer buf, int from) {
+		return (int) parseLong(buf, from, from + 4);
+	}
+
+	/**
+	 * @param buf buffer
+	 * @param from first byte of a field checked by isDate
+	 * @return month part of date
+	 */
+	public static int month(ByteBuffer buf, int from) {
+		return (int) parseLong(buf, from + 5, from + 7);
+	}
+
+	/**
+	 * @param buf buffer
+	 * @param from first byte of a field checked by isDate
+	 * @return day part of date
+	 */
+	public static int day(ByteBuffer buf, int from) {
+		return (int) parseLong(buf, from + 8, from + 10);
+	}
+
+	/**
+	 * Compares a field with an ASCII constant ignoring case
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @param s ASCII constant in upper case
+	 * @return true if the field equals to s ignoring case
+	 */
+	public static boolean equalsIgnoreCase(ByteBuffer buf, int from, int to, String s) {
+		if (to - from != s.length())
+			return false;
+		for (int i = 0; i < s.length(); ++i) {
+			int b = buf.get(from + i);
+			if (b >= 'a' && b <= 'z')
+				b -= 'a' - 'A';
+			if (b != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes an UTF-8 field
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @return String value of field
+	 */
+	public static String string(ByteBuffer buf, int from, int to) {
+		byte[] bytes = new byte[to - from];
+		ByteBuffer field = buf.duplicate();
+		field.position(from);
+		field.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
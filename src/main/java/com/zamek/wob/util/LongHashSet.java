@@ -0,0 +1,73 @@
+package com.zamek.wob.util;
+
+/**
+ * Set of primitive long values.
+ *
+ * <p>The values are the keys of a LongHashTable, so the set takes only the long array of the table.</p>
+ *
+ * <p>It is not thread safe.</p>
+ *
+ * @author zamek
+ */
+public class LongHashSet extends LongHashTable {
+
+	/**
+	 * Constructor of LongHashSet
+	 */
+	public LongHashSet() {
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * Constructor of LongHashSet
+	 *
+	 * @param expected expected number of values, the table is not resized until this size
+	 */
+	public LongHashSet(int expected) {
+		super(capacity(expected));
+	}
+
+	/**
+	 * Estimated memory of a set, it is 16-32 bytes per value
+	 *
+	 * @param expected expected number of values
+	 * @return size of the table of a set created for expected values in bytes
+	 */
+	public static long memoryEstimate(long expected) {
+		return (long) capacity((int) Math.min(expected, MAX_CAPACITY / 2)) * Long.BYTES;
+	}
+
+	/**
+	 * @return size of the table in bytes
+	 */
+	public long memory() {
+		return (long) capacity() * Long.BYTES;
+	}
+
+	/**
+	 * Adding a value
+	 *
+	 * @param value value to add
+	 * @return true if the value was not in the set
+	 */
+	public boolean add(long value) {
+		return value == 0 ? insertZero() : insert(value) < 0;
+	}
+
+	/**
+	 * Checking a value
+	 *
+	 * @param value value to check
+	 * @return true if the value is in the set
+	 */
+	public boolean contains(long value) {
+		return containsKey(value);
+	}
+
+	/**
+	 * Removing all values, the capacity of the table is kept
+	 */
+	public void clear() {
+		clearKeys();
+	}
+}
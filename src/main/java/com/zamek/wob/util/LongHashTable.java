@@ -0,0 +1,200 @@
+package com.zamek.wob.util;
+
+import java.util.Arrays;
+
+/**
+ * Common table of the primitive long keyed collections.
+ *
+ * <p>Open addressing hash table with linear probing, the keys are stored in a long array without boxing.
+ * The table is doubled when it is half full, so a probe usually hits in one or two slots. 0 is the marker
+ * of the empty slots, the 0 key is stored in a separate flag. The subclasses keep their values in parallel
+ * arrays indexed by the slots of the keys.</p>
+ *
+ * <p>It is not thread safe.</p>
+ *
+ * @author zamek
+ */
+abstract class LongHashTable {
+
+	final static int MIN_CAPACITY = 16;
+
+	/**
+	 * Maximum capacity of the table, the size of an array is limited to 2^31-1
+	 */
+	final static int MAX_CAPACITY = 1 << 30;
+
+	/**
+	 * 2^64 / golden ratio, it spreads the sequential ids over the table
+	 */
+	private final static long PHI = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Moving the value of a slot of the old table to a slot of the doubled table
+	 */
+	interface Relocation {
+		void move(int from, int to);
+	}
+
+	private final static Relocation NO_VALUES = (from, to) -> { /* keys only */ };
+
+	private long[] keys;
+	private int mask;
+	private int size;
+	private boolean hasZero;
+
+	/**
+	 * Constructor of LongHashTable
+	 *
+	 * @param capacity capacity of the table, a power of 2
+	 */
+	LongHashTable(int capacity) {
+		this.keys = new long[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Capacity of a table which is not resized until the expected number of keys
+	 *
+	 * @param expected expected number of keys
+	 * @return power of 2 capacity, at least twice of expected
+	 */
+	static int capacity(int expected) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < MAX_CAPACITY && capacity < 2L * expected)
+			capacity <<= 1;
+		return capacity;
+	}
+
+	private int slot(long key) {
+		long h = key * PHI;
+		return (int) (h ^ (h >>> 32)) & this.mask;
+	}
+
+	/**
+	 * Probing a not 0 key
+	 *
+	 * @return slot of the key or the empty slot where it can be inserted
+	 */
+	private int probe(long key) {
+		int i = slot(key);
+		for (long k = this.keys[i]; k != 0 && k != key; k = this.keys[i])
+			i = (i + 1) & this.mask;
+		return i;
+	}
+
+	/**
+	 * Searching a not 0 key
+	 *
+	 * @param key key to search
+	 * @return slot of the key or -1 if it is not in the table
+	 */
+	final int indexOf(long key) {
+		int i = probe(key);
+		return this.keys[i] == 0 ? -1 : i;
+	}
+
+	/**
+	 * Inserting a not 0 key, the table is doubled before the insert if it would be more than half full
+	 *
+	 * @param key key to insert
+	 * @return slot of the key if it was in the table, or -(slot + 1) if it is inserted
+	 */
+	final int insert(long key) {
+		int i = probe(key);
+		if (this.keys[i] != 0)
+			return i;
+		if (this.size + 1 > this.keys.length / 2) {
+			grow();
+			i = probe(key);
+		}
+		this.keys[i] = key;
+		++this.size;
+		return -(i + 1);
+	}
+
+	/**
+	 * Inserting the 0 key
+	 *
+	 * @return true if it was not in the table
+	 */
+	final boolean insertZero() {
+		if (this.hasZero)
+			return false;
+		this.hasZero = true;
+		++this.size;
+		return true;
+	}
+
+	/**
+	 * Checking a key
+	 *
+	 * @param key key to check
+	 * @return true if the key is in the table
+	 */
+	public boolean containsKey(long key) {
+		return key == 0 ? this.hasZero : indexOf(key) >= 0;
+	}
+
+	/**
+	 * @return number of keys
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return true if there are no keys
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * @return true if the 0 key is in the table
+	 */
+	final boolean hasZero() {
+		return this.hasZero;
+	}
+
+	/**
+	 * @return number of slots
+	 */
+	final int capacity() {
+		return this.keys.length;
+	}
+
+	/**
+	 * Removing all keys, the capacity of the table is kept
+	 */
+	void clearKeys() {
+		Arrays.fill(this.keys, 0);
+		this.size = 0;
+		this.hasZero = false;
+	}
+
+	/**
+	 * Allocating the values of the doubled table, it is called before the keys are moved
+	 *
+	 * @param capacity new capacity
+	 * @return the relocation of the values from the old arrays to the new ones
+	 */
+	Relocation resize(int capacity) {
+		return NO_VALUES;
+	}
+
+	private void grow() {
+		if (this.keys.length >= MAX_CAPACITY)
+			throw new IllegalStateException(getClass().getSimpleName() + " is full"); //$NON-NLS-1$
+		long[] old = this.keys;
+		this.keys = new long[old.length << 1];
+		this.mask = this.keys.length - 1;
+		Relocation values = resize(this.keys.length);
+		for (int j = 0; j < old.length; ++j) {
+			if (old[j] == 0)
+				continue;
+			int i = probe(old[j]);
+			this.keys[i] = old[j];
+			values.move(j, i);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.zamek.wob.util;
+
+/**
+ * Map with primitive long keys and values.
+ *
+ * <p>The keys are in a LongHashTable and the values are in a parallel long array without boxing, so an entry takes
+ * 16 bytes of the table. The value of the 0 key is stored in a separate field.</p>
+ *
+ * <p>It is not thread safe.</p>
+ *
+ * @author zamek
+ */
+public class LongLongMap extends LongHashTable {
+
+	private long[] values;
+	private long zeroValue;
+
+	/**
+	 * Constructor of LongLongMap
+	 */
+	public LongLongMap() {
+		super(MIN_CAPACITY);
+		this.values = new long[MIN_CAPACITY];
+	}
+
+	/**
+	 * Getting a value
+	 *
+	 * @param key key of the value
+	 * @param defaultValue result if the key is not in the map
+	 * @return the value of the key or defaultValue
+	 */
+	public long get(long key, long defaultValue) {
+		if (key == 0)
+			return hasZero() ? this.zeroValue : defaultValue;
+		int i = indexOf(key);
+		return i < 0 ? defaultValue : this.values[i];
+	}
+
+	/**
+	 * Putting a value
+	 *
+	 * @param key key of the value
+	 * @param value new value
+	 */
+	public void put(long key, long value) {
+		if (key == 0) {
+			insertZero();
+			this.zeroValue = value;
+			return;
+		}
+		int i = insert(key);
+		this.values[i < 0 ? -i - 1 : i] = value;
+	}
+
+	@Override
+	Relocation resize(int capacity) {
+		long[] old = this.values;
+		this.values = new long[capacity];
+		return (from, to) -> this.values[to] = old[from];
+	}
+}
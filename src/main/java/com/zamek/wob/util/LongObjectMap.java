@@ -0,0 +1,119 @@
+package com.zamek.wob.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Map with primitive long keys.
+ *
+ * <p>The keys are in a LongHashTable and the values are in a parallel array, so a lookup hashes only the key. 
+ * The value of the 0 key is stored in a separate field. Null values are not allowed.</p>
+ *
+ * <p>Iteration order is not defined. It is not thread safe.</p>
+ *
+ * @author zamek
+ *
+ * @param <V> type of values
+ */
+public class LongObjectMap<V> extends LongHashTable implements Iterable<V> {
+
+	private Object[] values;
+	private V zeroValue;
+
+	/**
+	 * Constructor of LongObjectMap
+	 */
+	public LongObjectMap() {
+		super(MIN_CAPACITY);
+		this.values = new Object[MIN_CAPACITY];
+	}
+
+	/**
+	 * Getting a value
+	 *
+	 * @param key key of the value
+	 * @return the value or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		if (key == 0)
+			return this.zeroValue;
+		int i = indexOf(key);
+		return i < 0 ? null : (V) this.values[i];
+	}
+
+	/**
+	 * Putting a value
+	 *
+	 * @param key key of the value
+	 * @param value new value, it cannot be null
+	 * @return the previous value of the key or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null)
+			throw new IllegalArgumentException("Null value"); //$NON-NLS-1$
+		if (key == 0) {
+			V old = this.zeroValue;
+			insertZero();
+			this.zeroValue = value;
+			return old;
+		}
+		int i = insert(key);
+		if (i < 0) {
+			this.values[-i - 1] = value;
+			return null;
+		}
+		V old = (V) this.values[i];
+		this.values[i] = value;
+		return old;
+	}
+
+	/**
+	 * Iterating the values
+	 */
+	@Override
+	public Iterator<V> iterator() {
+		return new Iterator<V>() {
+			private int index = -1;
+
+			{
+				advance();
+			}
+
+			private void advance() {
+				do {
+					++this.index;
+				}
+				while (this.index < LongObjectMap.this.values.length && LongObjectMap.this.values[this.index] == null);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return this.index < LongObjectMap.this.values.length
+						|| this.index == LongObjectMap.this.values.length && LongObjectMap.this.zeroValue != null;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public V next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				if (this.index == LongObjectMap.this.values.length) {
+					++this.index;
+					return LongObjectMap.this.zeroValue;
+				}
+				V value = (V) LongObjectMap.this.values[this.index];
+				advance();
+				return value;
+			}
+		};
+	}
+
+	@Override
+	Relocation resize(int capacity) {
+		Object[] old = this.values;
+		this.values = new Object[capacity];
+		return (from, to) -> this.values[to] = old[from];
+	}
+}
@@ -0,0 +1,103 @@
+package com.zamek.wob.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded memo cache of computed values.
+ *
+ * <p>It can be used from many threads, the values must be immutable. When the cache is full it is dropped
+ * as a whole, because the repeating keys of a feed get back into it soon. A key can be computed more than once
+ * by concurrent threads, the computation must not have side effects.</p>
+ *
+ * <p>Hits and misses are counted for the statistics of the import. The counters are not reset, a shared cache is
+ * used by many imports, so an import logs the difference of the counters from its start.</p>
+ *
+ * @author zamek
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public class MemoCache<K, V> {
+
+	private final int maxSize;
+	private final ConcurrentMap<K, V> cache;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructor of MemoCache
+	 *
+	 * @param maxSize max number of cached values
+	 */
+	public MemoCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.cache = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Getting a cached value
+	 *
+	 * @param key key of the value
+	 * @return the cached value or null if it is not in the cache
+	 */
+	public V get(K key) {
+		V value = this.cache.get(key);
+		if (value == null)
+			this.misses.increment();
+		else
+			this.hits.increment();
+		return value;
+	}
+
+	/**
+	 * Getting a value, it is computed if it is not in the cache
+	 *
+	 * @param key key of the value
+	 * @param compute computes the value of a key, it cannot return null
+	 * @return the cached or computed value
+	 */
+	public V get(K key, Function<K, V> compute) {
+		V value = get(key);
+		if (value == null) {
+			value = compute.apply(key);
+			put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Storing a value
+	 *
+	 * @param key key of the value
+	 * @param value value of the key
+	 */
+	public void put(K key, V value) {
+		if (this.cache.size() >= this.maxSize)
+			this.cache.clear();
+		this.cache.put(key, value);
+	}
+
+	/**
+	 * @return number of found values
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * @return number of missing values
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * @return number of cached values
+	 */
+	public int size() {
+		return this.cache.size();
+	}
+}
@@ -0,0 +1,211 @@
+package com.zamek.wob.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed point money values.
+ *
+ * <p>Prices and totals are stored as long minor units (cents), so the sums are exact. The parsers read the cents
+ * directly from the digits of a decimal field, the fraction is rounded half up to 2 digits. Other forms accepted
+ * by NumberChecker.isFloat (exponent, hexadecimal, type suffix) are converted on a slower path. The limits of the
+ * prices are checked on the exact value by compare(), because the rounding can carry a value over a limit.</p>
+ *
+ * @author zamek
+ */
+public class Money {
+
+	/**
+	 * Number of cents in a unit
+	 */
+	public final static int CENTS = 100;
+
+	/**
+	 * Number of fraction digits of cents
+	 */
+	public final static int SCALE = 2;
+
+	/**
+	 * Result of the parsers for values which cannot be stored as cents (NaN, Infinity or too large)
+	 */
+	public final static long INVALID = Long.MIN_VALUE;
+
+	/**
+	 * Max number of integer digits, the cents of a larger value can overflow
+	 */
+	private final static int MAX_UNIT_DIGITS = 16;
+
+	private final static BigDecimal MIN_CENTS = BigDecimal.valueOf(-Long.MAX_VALUE);
+	private final static BigDecimal MAX_CENTS = BigDecimal.valueOf(Long.MAX_VALUE);
+
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isSign(int c) {
+		return c == '-' || c == '+';
+	}
+
+	/**
+	 * Parsing a money value
+	 *
+	 * @param s String accepted by NumberChecker.isFloat
+	 * @return value in cents or INVALID
+	 */
+	public static long parse(String s) {
+		String in = s.trim();
+		long cents = parseDecimal(in);
+		return cents != INVALID ? cents : parseOther(in);
+	}
+
+	/**
+	 * Checks a decimal money field
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @return true if the field is an optional sign, maximum 16 integer digits and an optional fraction
+	 */
+	public static boolean isDecimal(ByteBuffer buf, int from, int to) {
+		int start = from < to && isSign(buf.get(from)) ? from + 1 : from;
+		int digits = 0;
+		int units = -1;
+		for (int i = start; i < to; ++i) {
+			byte b = buf.get(i);
+			if (isDigit(b))
+				++digits;
+			else if (b == '.' && units < 0)
+				units = digits;
+			else
+				return false;
+		}
+		return digits > 0 && (units < 0 ? digits : units) <= MAX_UNIT_DIGITS;
+	}
+
+	/**
+	 * Parses a field which is checked by isDecimal
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @return value of field in cents
+	 */
+	public static long parseDecimal(ByteBuffer buf, int from, int to) {
+		boolean negative = buf.get(from) == '-';
+		int i = isSign(buf.get(from)) ? from + 1 : from;
+		long units = 0;
+		for (; i < to && buf.get(i) != '.'; ++i)
+			units = units * 10 + (buf.get(i) - '0');
+		int fraction = 0;
+		int scale = 0;
+		boolean up = false;
+		if (i < to)
+			for (++i; i < to; ++i, ++scale) {
+				if (scale < SCALE)
+					fraction = fraction * 10 + (buf.get(i) - '0');
+				else if (scale == SCALE)
+					up = buf.get(i) >= '5';
+			}
+		return cents(negative, units, fraction, scale, up);
+	}
+
+	/**
+	 * Parsing a plain decimal without exponent
+	 *
+	 * @param in trimmed String
+	 * @return value in cents or INVALID if it is not a plain decimal
+	 */
+	private static long parseDecimal(String in) {
+		int len = in.length();
+		int i = len > 0 && isSign(in.charAt(0)) ? 1 : 0;
+		boolean negative = i > 0 && in.charAt(0) == '-';
+		int digits = 0;
+		long units = 0;
+		for (; i < len && isDigit(in.charAt(i)); ++i, ++digits)
+			units = units * 10 + (in.charAt(i) - '0');
+		if (digits > MAX_UNIT_DIGITS)
+			return INVALID;
+		int fraction = 0;
+		int scale = 0;
+		boolean up = false;
+		if (i < len && in.charAt(i) == '.')
+			for (++i; i < len && isDigit(in.charAt(i)); ++i, ++scale) {
+				if (scale < SCALE)
+					fraction = fraction * 10 + (in.charAt(i) - '0');
+				else if (scale == SCALE)
+					up = in.charAt(i) >= '5';
+			}
+		if (i < len || digits + scale == 0)
+			return INVALID;
+		return cents(negative, units, fraction, scale, up);
+	}
+
+	/**
+	 * Assembling cents from the parsed parts
+	 *
+	 * @param negative sign of value
+	 * @param units integer part
+	 * @param fraction first maximum 2 digits of the fraction
+	 * @param scale number of fraction digits
+	 * @param up true if the third fraction digit rounds up
+	 * @return value in cents
+	 */
+	private static long cents(boolean negative, long units, int fraction, int scale, boolean up) {
+		long cents = units * CENTS + (scale == 1 ? fraction * 10 : fraction) + (up ? 1 : 0);
+		return negative ? -cents : cents;
+	}
+
+	/**
+	 * Converting the rare forms (exponent, hexadecimal, type suffix, too many digits) through a double
+	 *
+	 * @param in trimmed String accepted by NumberChecker.isFloat
+	 * @return value in cents or INVALID
+	 */
+	private static long parseOther(String in) {
+		double d = Double.parseDouble(in);
+		if (Double.isNaN(d) || Double.isInfinite(d))
+			return INVALID;
+		BigDecimal cents = BigDecimal.valueOf(d).setScale(SCALE, RoundingMode.HALF_UP).movePointRight(SCALE);
+		if (cents.compareTo(MIN_CENTS) < 0 || cents.compareTo(MAX_CENTS) > 0)
+			return INVALID;
+		return cents.longValue();
+	}
+
+	/**
+	 * Comparing the exact value of a money field with cents. The parsers round the fraction, so a value which is parsed 
+	 * to the cents of a limit can be less or greater than the limit.
+	 *
+	 * @param s String accepted by NumberChecker.isFloat, it is not NaN or Infinity
+	 * @param cents value in cents
+	 * @return negative, zero or positive if the exact value is less than, equal to or greater than cents
+	 */
+	public static int compare(String s, long cents) {
+		String in = s.trim();
+		BigDecimal exact = parseDecimal(in) != INVALID ? new BigDecimal(in) : BigDecimal.valueOf(Double.parseDouble(in));
+		return exact.compareTo(BigDecimal.valueOf(cents, SCALE));
+	}
+
+	/**
+	 * Comparing the exact value of a field which is checked by isDecimal with cents
+	 *
+	 * @param buf buffer
+	 * @param from first byte of field
+	 * @param to end of field (exclusive)
+	 * @param cents value in cents
+	 * @return negative, zero or positive if the exact value is less than, equal to or greater than cents
+	 */
+	public static int compare(ByteBuffer buf, int from, int to, long cents) {
+		return compare(ByteParser.string(buf, from, to), cents);
+	}
+
+	/**
+	 * Formatting cents
+	 *
+	 * @param cents value in cents
+	 * @return decimal String with 2 fraction digits
+	 */
+	public static String toString(long cents) {
+		return BigDecimal.valueOf(cents, SCALE).toPlainString();
+	}
+}
@@ -0,0 +1,200 @@
+package com.zamek.wob.util;
+
+/**
+ * Exception free syntax checks of numbers.
+ *
+ * <p>The isXXX methods accept exactly the Strings accepted by Integer.parseInt, Long.parseLong and Float.parseFloat,
+ * so a checked String can be parsed without a NumberFormatException. longError() and floatError() return the message
+ * of the exception which the parse would throw for an unaccepted String.</p>
+ *
+ * @author zamek
+ */
+public class NumberChecker {
+
+	private final static String EMPTY_STRING = "empty String"; //$NON-NLS-1$
+	private final static String INPUT_STRING = "For input string: \""; //$NON-NLS-1$
+	private final static String NAN = "NaN"; //$NON-NLS-1$
+	private final static String INFINITY = "Infinity"; //$NON-NLS-1$
+	private final static String NULL = "null"; //$NON-NLS-1$
+
+	private static boolean isAsciiDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHexDigit(char c) {
+		return isAsciiDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+	}
+
+	private static boolean isSign(char c) {
+		return c == '-' || c == '+';
+	}
+
+	/**
+	 * Checking an int in radix 10 like Integer.parseInt
+	 *
+	 * @param s String to check
+	 * @return true if Integer.parseInt accepts it
+	 */
+	public static boolean isInt(String s) {
+		return isInteger(s, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Checking a long in radix 10 like Long.parseLong
+	 *
+	 * @param s String to check
+	 * @return true if Long.parseLong accepts it
+	 */
+	public static boolean isLong(String s) {
+		return isInteger(s, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Checking an integer in radix 10, the digits are accumulated negatively like in Long.parseLong
+	 *
+	 * @param s String to check
+	 * @param min min value of the type
+	 * @param max max value of the type
+	 * @return true if the parse of the type accepts it
+	 */
+	private static boolean isInteger(String s, long min, long max) {
+		if (s == null || s.isEmpty())
+			return false;
+		int i = 0;
+		int len = s.length();
+		boolean negative = false;
+		char first = s.charAt(0);
+		if (first < '0') {
+			if (!isSign(first) || len == 1)
+				return false;
+			negative = first == '-';
+			++i;
+		}
+		long limit = negative ? min : -max;
+		long multmin = limit / 10;
+		long result = 0;
+		for (; i < len; ++i) {
+			int digit = Character.digit(s.charAt(i), 10);
+			if (digit < 0 || result < multmin)
+				return false;
+			result *= 10;
+			if (result < limit + digit)
+				return false;
+			result -= digit;
+		}
+		return true;
+	}
+
+	/**
+	 * Checking a float like Float.parseFloat.
+	 *
+	 * It accepts the leading and trailing whitespaces, NaN, Infinity, hexadecimal and decimal forms with optional
+	 * exponent and type suffix.
+	 *
+	 * @param s String to check
+	 * @return true if Float.parseFloat accepts it
+	 */
+	public static boolean isFloat(String s) {
+		if (s == null)
+			return false;
+		String in = s.trim();
+		int len = in.length();
+		if (len == 0)
+			return false;
+		int i = 0;
+		if (isSign(in.charAt(i)))
+			++i;
+		if (i == len)
+			return false;
+		char c = in.charAt(i);
+		if (c == 'N')
+			return in.regionMatches(i, NAN, 0, NAN.length()) && i + NAN.length() == len;
+		if (c == 'I')
+			return in.regionMatches(i, INFINITY, 0, INFINITY.length()) && i + INFINITY.length() == len;
+		if (c == '0' && i + 1 < len && (in.charAt(i + 1) == 'x' || in.charAt(i + 1) == 'X'))
+			return isHexFloat(in, i + 2);
+
+		int digits = 0;
+		for (; i < len && isAsciiDigit(in.charAt(i)); ++i)
+			++digits;
+		if (i < len && in.charAt(i) == '.')
+			for (++i; i < len && isAsciiDigit(in.charAt(i)); ++i)
+				++digits;
+		if (digits == 0)
+			return false;
+		if (i < len && (in.charAt(i) == 'e' || in.charAt(i) == 'E')) {
+			i = exponent(in, i + 1);
+			if (i < 0)
+				return false;
+		}
+		return isEnd(in, i);
+	}
+
+	/**
+	 * Checking the rest of a hexadecimal float after 0x
+	 */
+	private static boolean isHexFloat(String in, int from) {
+		int len = in.length();
+		int i = from;
+		int digits = 0;
+		for (; i < len && isHexDigit(in.charAt(i)); ++i)
+			++digits;
+		if (i < len && in.charAt(i) == '.')
+			for (++i; i < len && isHexDigit(in.charAt(i)); ++i)
+				++digits;
+		if (digits == 0 || i == len || in.charAt(i) != 'p' && in.charAt(i) != 'P')
+			return false;
+		i = exponent(in, i + 1);
+		return i >= 0 && isEnd(in, i);
+	}
+
+	/**
+	 * Checking the digits of an exponent
+	 *
+	 * @return position after the exponent or -1 if it has no digits
+	 */
+	private static int exponent(String in, int from) {
+		int len = in.length();
+		int i = from;
+		if (i < len && isSign(in.charAt(i)))
+			++i;
+		int start = i;
+		while (i < len && isAsciiDigit(in.charAt(i)))
+			++i;
+		return i == start ? -1 : i;
+	}
+
+	/**
+	 * Checking the end of a float, a type suffix can be there
+	 */
+	private static boolean isEnd(String in, int i) {
+		int len = in.length();
+		if (i == len)
+			return true;
+		char c = in.charAt(i);
+		return i == len - 1 && (c == 'f' || c == 'F' || c == 'd' || c == 'D');
+	}
+
+	/**
+	 * Message of the NumberFormatException of an unaccepted int or long
+	 *
+	 * @param s String not accepted by isInt or isLong
+	 * @return message of the exception of Integer.parseInt and Long.parseLong or "null" for null
+	 */
+	public static String longError(String s) {
+		return s == null ? NULL : INPUT_STRING + s + '"';
+	}
+
+	/**
+	 * Message of the NumberFormatException of an unaccepted float
+	 *
+	 * @param s String not accepted by isFloat
+	 * @return message of the exception of Float.parseFloat or "null" for null
+	 */
+	public static String floatError(String s) {
+		if (s == null)
+			return NULL;
+		String in = s.trim();
+		return in.isEmpty() ? EMPTY_STRING : INPUT_STRING + in + '"';
+	}
+}
@@ -0,0 +1,198 @@
+package com.zamek.wob.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream of a file which is being written.
+ *
+ * <p>The reader follows the writer of the file: at the current end of the file it waits until new bytes are written
+ * or the writer finishes the file. The end of the stream is given only after finish(), so a consumer (e.g. an upload)
+ * can start before the file is complete. The writer signals the events of the file, the reader is not opened until
+ * the writer has created the file, so an old file with the same name is not read.</p>
+ *
+ * <p>It supports mark and reset at any distance and skip without reading, so a finished file can be read again from
+ * a position, e.g. by a resumed upload.</p>
+ *
+ * <p>The signals can be given from any thread, the stream is read by one thread.</p>
+ *
+ * @author zamek
+ *
+ */
+public class TailInputStream extends InputStream {
+
+	/**
+	 * Default wait at the end of the file for new bytes in milliseconds
+	 */
+	public final static long DEF_POLL_MILLIS = 20;
+
+	private final Path path;
+	private final long pollMillis;
+	private FileChannel channel;
+	private long position;
+	private long mark;
+	private boolean opened;
+	private boolean finished;
+	private String failure;
+
+	/**
+	 * Constructor of TailInputStream
+	 *
+	 * @param path path of the file
+	 */
+	public TailInputStream(Path path) {
+		this(path, DEF_POLL_MILLIS);
+	}
+
+	/**
+	 * Constructor of TailInputStream
+	 *
+	 * @param path path of the file
+	 * @param pollMillis wait at the end of the file for new bytes in milliseconds
+	 */
+	public TailInputStream(Path path, long pollMillis) {
+		this.path = path;
+		this.pollMillis = pollMillis > 0 ? pollMillis : DEF_POLL_MILLIS;
+	}
+
+	/**
+	 * Signal of the writer: the file is created, it can be read
+	 */
+	public synchronized void open() {
+		this.opened = true;
+		notifyAll();
+	}
+
+	/**
+	 * Signal of the writer: the file is complete, the stream ends at the end of the file
+	 */
+	public synchronized void finish() {
+		this.opened = true;
+		this.finished = true;
+		notifyAll();
+	}
+
+	/**
+	 * Signal of the writer: the file cannot be completed, the reading fails
+	 *
+	 * @param reason message of the IOException of the reader
+	 */
+	public synchronized void abort(String reason) {
+		this.failure = reason;
+		notifyAll();
+	}
+
+	/**
+	 * @return path of the file
+	 */
+	public Path getPath() {
+		return this.path;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		int n = read(b, 0, 1);
+		return n < 0 ? -1 : b[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+		for (;;) {
+			boolean complete = await();
+			int n = channel().read(buf);
+			if (n > 0) {
+				this.position += n;
+				return n;
+			}
+			if (complete)
+				return -1;
+			synchronized (this) {
+				if (!this.finished && this.failure == null)
+					pause();
+			}
+		}
+	}
+
+	/**
+	 * Skipping bytes which are already written
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0)
+			return 0;
+		await();
+		long skipped = Math.min(n, Math.max(0, channel().size() - this.position));
+		this.position += skipped;
+		this.channel.position(this.position);
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	/**
+	 * Marking the current position, the readlimit is not used
+	 */
+	@Override
+	public synchronized void mark(int readlimit) {
+		this.mark = this.position;
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		this.position = this.mark;
+		if (this.channel != null)
+			this.channel.position(this.position);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.channel != null) {
+			this.channel.close();
+			this.channel = null;
+		}
+	}
+
+	/**
+	 * Waiting for the opening of the file
+	 *
+	 * @return true if the file is complete before the next reading
+	 * @throws IOException if the writer aborted or the thread is interrupted
+	 */
+	private synchronized boolean await() throws IOException {
+		while (!this.opened && this.failure == null)
+			pause();
+		if (this.failure != null)
+			throw new IOException(this.failure);
+		return this.finished;
+	}
+
+	private FileChannel channel() throws IOException {
+		if (this.channel == null) {
+			this.channel = FileChannel.open(this.path, StandardOpenOption.READ);
+			this.channel.position(this.position);
+		}
+		return this.channel;
+	}
+
+	private void pause() throws InterruptedIOException {
+		try {
+			wait(this.pollMillis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Reading of "+this.path+" is interrupted"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+}
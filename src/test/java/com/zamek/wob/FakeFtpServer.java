@@ -0,0 +1,256 @@
+package com.zamek.wob;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in of an ftp server for the upload tests.
+ *
+ * <p>It knows the commands of an upload: USER, PASS, TYPE, PORT, PASV, REST, SIZE, STOR, APPE and QUIT. The files
+ * are stored under a root directory, ascii transfers are stored with \n line ends. Disconnects can be injected: the
+ * first transfers are broken after a given number of bytes, the received bytes are kept and both connections are
+ * closed.</p>
+ *
+ * @author zamek
+ *
+ */
+public class FakeFtpServer implements Closeable {
+
+	private final static int BUFFER_SIZE = 8 * 1024;
+
+	private final Path root;
+	private final ServerSocket server;
+	private final List<String> commands = Collections.synchronizedList(new ArrayList<>());
+	private final AtomicInteger transfers = new AtomicInteger();
+	private volatile long failBytes;
+	private final AtomicInteger failures = new AtomicInteger();
+
+	/**
+	 * Starting a server on a free port of the loopback address
+	 *
+	 * @param root directory of the files
+	 * @throws IOException if the server cannot be started
+	 */
+	public FakeFtpServer(Path root) throws IOException {
+		this.root = root;
+		this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread t = new Thread(this::accept, "fake-ftp"); //$NON-NLS-1$
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * @return port of the control connection
+	 */
+	public int getPort() {
+		return this.server.getLocalPort();
+	}
+
+	/**
+	 * Injecting disconnects
+	 *
+	 * @param bytes the transfer is broken after these bytes
+	 * @param times number of broken transfers
+	 */
+	public void failAfter(long bytes, int times) {
+		this.failBytes = bytes;
+		this.failures.set(times);
+	}
+
+	/**
+	 * @return received commands with their arguments
+	 */
+	public List<String> getCommands() {
+		synchronized (this.commands) {
+			return new ArrayList<>(this.commands);
+		}
+	}
+
+	/**
+	 * @return number of started STOR and APPE transfers
+	 */
+	public int getTransfers() {
+		return this.transfers.get();
+	}
+
+	/**
+	 * Path of a remote file
+	 *
+	 * @param name name of the file in the commands
+	 * @return path under the root
+	 */
+	public Path resolve(String name) {
+		return this.root.resolve(name.startsWith("/") ? name.substring(1) : name); //$NON-NLS-1$
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.server.close();
+	}
+
+	private void accept() {
+		try {
+			for (;;) {
+				Socket control = this.server.accept();
+				Thread t = new Thread(() -> session(control), "fake-ftp-session"); //$NON-NLS-1$
+				t.setDaemon(true);
+				t.start();
+			}
+		}
+		catch (@SuppressWarnings("unused") IOException e) {
+			//NC server is closed
+		}
+	}
+
+	private void session(Socket control) {
+		try (Socket c = control) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.US_ASCII));
+			OutputStream out = c.getOutputStream();
+			reply(out, "220 Fake ftp server ready"); //$NON-NLS-1$
+			boolean ascii = true;
+			long restart = 0;
+			InetSocketAddress active = null;
+			ServerSocket passive = null;
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				this.commands.add(line);
+				int space = line.indexOf(' ');
+				String cmd = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+				String arg = space < 0 ? "" : line.substring(space + 1); //$NON-NLS-1$
+				switch (cmd) {
+				case "USER" : reply(out, "331 Password required"); break; //$NON-NLS-1$ //$NON-NLS-2$
+				case "PASS" : reply(out, "230 Logged in"); break; //$NON-NLS-1$ //$NON-NLS-2$
+				case "TYPE" : //$NON-NLS-1$
+					ascii = arg.toUpperCase(Locale.ROOT).startsWith("A"); //$NON-NLS-1$
+					reply(out, "200 Type set"); //$NON-NLS-1$
+					break;
+				case "PORT" : { //$NON-NLS-1$
+					String[] p = arg.split(","); //$NON-NLS-1$
+					active = new InetSocketAddress(p[0]+'.'+p[1]+'.'+p[2]+'.'+p[3], Integer.parseInt(p[4]) * 256 + Integer.parseInt(p[5]));
+					passive = close(passive);
+					reply(out, "200 PORT command successful"); //$NON-NLS-1$
+					break;
+				}
+				case "PASV" : { //$NON-NLS-1$
+					passive = close(passive);
+					passive = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+					active = null;
+					int port = passive.getLocalPort();
+					reply(out, String.format("227 Entering Passive Mode (127,0,0,1,%d,%d)", Integer.valueOf(port / 256), Integer.valueOf(port % 256))); //$NON-NLS-1$
+					break;
+				}
+				case "REST" : //$NON-NLS-1$
+					restart = Long.parseLong(arg.trim());
+					reply(out, "350 Restarting at "+restart); //$NON-NLS-1$
+					break;
+				case "SIZE" : { //$NON-NLS-1$
+					Path path = resolve(arg);
+					if (Files.isRegularFile(path))
+						reply(out, "213 "+Files.size(path)); //$NON-NLS-1$
+					else
+						reply(out, "550 No such file"); //$NON-NLS-1$
+					break;
+				}
+				case "STOR" : //$NON-NLS-1$
+				case "APPE" : { //$NON-NLS-1$
+					reply(out, "150 Opening data connection"); //$NON-NLS-1$
+					boolean completed;
+					try (Socket data = passive != null ? passive.accept() : connect(active)) {
+						completed = receive(data.getInputStream(), resolve(arg), "APPE".equals(cmd), restart, ascii); //$NON-NLS-1$
+					}
+					restart = 0;
+					passive = close(passive);
+					if (!completed)
+						return;
+					reply(out, "226 Transfer complete"); //$NON-NLS-1$
+					break;
+				}
+				case "QUIT" : reply(out, "221 Bye"); return; //$NON-NLS-1$ //$NON-NLS-2$
+				default:
+					reply(out, "502 Command not implemented"); //$NON-NLS-1$
+				}
+			}
+		}
+		catch (@SuppressWarnings("unused") IOException e) {
+			//NC client is disconnected
+		}
+	}
+
+	/**
+	 * Receiving a file
+	 *
+	 * @return false if the transfer is broken by an injected disconnect
+	 */
+	private boolean receive(InputStream in, Path path, boolean append, long restart, boolean ascii) throws IOException {
+		this.transfers.incrementAndGet();
+		boolean fail = this.failures.getAndDecrement() > 0;
+		Files.createDirectories(path.getParent());
+		try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			if (restart > 0 || !append)
+				file.truncate(restart);
+			file.position(file.size());
+			byte[] buf = new byte[BUFFER_SIZE];
+			long received = 0;
+			boolean cr = false;
+			for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+				if (fail && received + n >= this.failBytes)
+					n = (int) (this.failBytes - received);
+				received += n;
+				if (ascii) {
+					ByteBuffer target = ByteBuffer.allocate(n + 1);
+					for (int i = 0; i < n; ++i) {
+						if (cr && buf[i] != '\n')
+							target.put((byte) '\r');
+						cr = buf[i] == '\r';
+						if (!cr)
+							target.put(buf[i]);
+					}
+					target.flip();
+					file.write(target);
+				}
+				else
+					file.write(ByteBuffer.wrap(buf, 0, n));
+				if (fail && received >= this.failBytes)
+					return false;
+			}
+			if (cr)
+				file.write(ByteBuffer.wrap(new byte[] {'\r'}));
+			return true;
+		}
+	}
+
+	private static Socket connect(InetSocketAddress address) throws IOException {
+		if (address == null)
+			throw new IOException("No data connection"); //$NON-NLS-1$
+		return new Socket(address.getAddress(), address.getPort());
+	}
+
+	private static ServerSocket close(ServerSocket socket) throws IOException {
+		if (socket != null)
+			socket.close();
+		return null;
+	}
+
+	private static void reply(OutputStream out, String reply) throws IOException {
+		out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$
+		out.flush();
+	}
+}
@@ -1,21 +1,29 @@
 package com.zamek.wob.domain;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
-import java.text.SimpleDateFormat;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.Period;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.FutureTask;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -36,7 +44,8 @@ import com.zamek.wob.domain.order.Order;
 import com.zamek.wob.domain.order.OrderBuilder;
 import com.zamek.wob.domain.orderitem.OrderItem;
 import com.zamek.wob.domain.orderitem.OrderItemStatus;
-import com.zamek.wob.util.DateUtils;
+import com.zamek.wob.util.Money;
+import com.zamek.wob.util.TailInputStream;
 
 public class CSVTest {
 
@@ -53,7 +62,7 @@ public class CSVTest {
 	private final static LocalDate DATE = LocalDate.now().minus(Period.of(5, 1, 20));
 	private final static int NUMBER_OF_ORDERS = 10;
 	private final static int NUMBER_OF_ITEMS = 10;
-	private final static SimpleDateFormat FORMATTER = new SimpleDateFormat(OrderBuilder.DATE_FORMAT);
+	private final static DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(OrderBuilder.DATE_FORMAT);
 	private static int lineNumber = 1;
 	
 	private static EntityManagerFactory emFactoryObj=Persistence.createEntityManagerFactory(TestConsts.PERSISTENCE_NAME);
@@ -106,16 +115,16 @@ public class CSVTest {
 		order.setBuyerName(BUYERS_NAME+lns);
 		order.setBuyerEmail(BUYERS_EMAIL);
 		order.setId(Long.valueOf(lineNumber));
-		order.setOrderDate(DateUtils.asDate(ld));
+		order.setOrderDate(ld);
 		order.setPostCode(Integer.parseInt(ZIP+lns));
 		List<OrderItem> itms = new ArrayList<>(NUMBER_OF_ITEMS);
-		float total = 0;
+		long total = 0;
 		for(int i=0; i<NUMBER_OF_ITEMS; ++i) {
 			OrderItem item = new OrderItem();
 			item.setOrder(order);
 			item.setId(Long.valueOf(lineNumber*NUMBER_OF_ITEMS+i));
-			item.setSalePrice(42+lineNumber);
-			item.setShippingPrice(lineNumber);
+			item.setSalePrice((42+lineNumber) * Money.CENTS);
+			item.setShippingPrice(lineNumber * Money.CENTS);
 			item.setTotalItemPrice(item.getSalePrice()+item.getShippingPrice());
 			item.setSKU(SKU+lns);
 			item.setStatus(i%2==0?OrderItemStatus.IN_STOCK:OrderItemStatus.OUT_OF_STOCK);
@@ -128,8 +137,8 @@ public class CSVTest {
 								order.getBuyerEmail(), 
 								order.getAddress(), 
 								order.getPostCode(),
-								Float.valueOf(item.getSalePrice()), 
-								Float.valueOf(item.getShippingPrice()), 
+								Money.toString(item.getSalePrice()), 
+								Money.toString(item.getShippingPrice()), 
 								item.getSKU(), 
 								item.getStatus(), 
 								FORMATTER.format(order.getOrderDate()));
@@ -139,6 +148,117 @@ public class CSVTest {
 		orders.put(order, itms);
 	}
 	
+	@SuppressWarnings("static-method")
+	@Test
+	public void testResponseFormat() throws IOException {
+		String[] messages = {"", "OrderId error:For input string: \"x\"", "a;b", "line\nbreak", "#comment", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+				" leading", "trailing ", "\u00e1rv\u00edzt\u0171r\u0151", "Duplicate orderitem:com.zamek.wob.OrderItem@42", null}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		StringWriter expected = new StringWriter();
+		try (CSVPrinter printer = new CSVPrinter(expected, CSVImporter.CSV_FILE_FORMAT)) {
+			printer.printRecord(ResponseFile.HEADER);
+			for (int i = 0; i < 100; ++i) 
+				printer.printRecord(Integer.valueOf(i), i % 3 == 0 ? ResponseFile.Status.OK : ResponseFile.Status.ERROR, messages[i % messages.length]);
+		}
+		for (boolean async : new boolean[] {false, true}) {
+			String name = TEST_PATH + "format.response"; //$NON-NLS-1$
+			try (ResponseFile response = new ResponseFile(name, 16, async, ResponseFile.Format.FULL)) {
+				response.open();
+				for (int i = 0; i < 100; ++i) 
+					response.message(i, i % 3 == 0 ? ResponseFile.Status.OK : ResponseFile.Status.ERROR, messages[i % messages.length]);
+			}
+			assertEquals(new String(expected.toString().getBytes(Charset.defaultCharset()), Charset.defaultCharset()), 
+					new String(Files.readAllBytes(Paths.get(name)), Charset.defaultCharset()));
+		}
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void testCompactResponse() throws IOException {
+		String name = TEST_PATH + "compact.response"; //$NON-NLS-1$
+		try (ResponseFile response = new ResponseFile(name, 16, true, ResponseFile.Format.COMPACT)) {
+			response.open();
+			for (int i = 1; i <= 5; ++i)
+				response.message(i, ResponseFile.Status.OK, ""); //$NON-NLS-1$
+			response.message(6, ResponseFile.Status.ERROR, "a;b"); //$NON-NLS-1$
+			response.message(7, ResponseFile.Status.OK, ""); //$NON-NLS-1$
+			response.message(9, ResponseFile.Status.OK, ""); //$NON-NLS-1$
+			response.message(10, ResponseFile.Status.OK, ""); //$NON-NLS-1$
+			response.trailer(10, 8, 1);
+		}
+		assertEquals("LineNumber;Status;Message\n1-5;OK;\n6;ERROR;\"a;b\"\n7;OK;\n9-10;OK;\n" + //$NON-NLS-1$
+				"TOTAL;ERROR;processed=10,valid=8,error=1\n", //$NON-NLS-1$
+				new String(Files.readAllBytes(Paths.get(name)), Charset.defaultCharset()));
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void testResponseWritten() throws IOException {
+		String name = TEST_PATH + "written.response"; //$NON-NLS-1$
+		for (boolean async : new boolean[] {false, true}) {
+			ResponseFile response = new ResponseFile(name, ResponseFile.DEF_BUFFER_SIZE, async, ResponseFile.Format.FULL);
+			try {
+				response.open();
+				for (int i = 1; i <= 10; ++i)
+					response.message(i, ResponseFile.Status.OK, "line " + i); //$NON-NLS-1$
+				assertEquals(0, response.getWritten());
+			}
+			finally {
+				response.close();
+			}
+			assertEquals(10, response.getWritten());
+			
+			response = new ResponseFile(name, 16, async, ResponseFile.Format.FULL);
+			try {
+				response.open();
+				for (int i = 1; i <= 100; ++i) {
+					response.message(i, ResponseFile.Status.OK, "line " + i); //$NON-NLS-1$
+					assertTrue(response.getWritten() <= i);
+				}
+			}
+			finally {
+				response.close();
+			}
+			assertEquals(100, response.getWritten());
+			assertEquals(101, Files.readAllLines(Paths.get(name), Charset.defaultCharset()).size());
+		}
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void testResponseTail() throws Exception {
+		String name = TEST_PATH + "tail.response"; //$NON-NLS-1$
+		TailInputStream tail = new TailInputStream(Paths.get(name), 1);
+		FutureTask<byte[]> reader = new FutureTask<>(() -> {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (TailInputStream in = tail) {
+				byte[] buf = new byte[100];
+				for (int n = in.read(buf); n >= 0; n = in.read(buf))
+					out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		});
+		new Thread(reader).start();
+		try (ResponseFile response = new ResponseFile(name, 16, true, ResponseFile.Format.FULL)) {
+			response.open();
+			tail.open();
+			for (int i = 0; i < 1000; ++i) 
+				response.message(i, ResponseFile.Status.OK, "line " + i); //$NON-NLS-1$
+		}
+		assertFalse(reader.isDone());
+		tail.finish();
+		assertArrayEquals(Files.readAllBytes(Paths.get(name)), reader.get());
+		
+		TailInputStream aborted = new TailInputStream(Paths.get(name), 1);
+		aborted.abort("failed"); //$NON-NLS-1$
+		try {
+			aborted.read();
+			fail("Aborted tail is read"); //$NON-NLS-1$
+		}
+		catch (IOException e) {
+			assertEquals("failed", e.getMessage()); //$NON-NLS-1$
+		}
+	}
+	
 	@SuppressWarnings("static-method")
 	@Test
 	public void testCSVProcessing() {
@@ -0,0 +1,80 @@
+package com.zamek.wob.domain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.zamek.wob.daemon.InboxWatcher;
+
+public class DaemonTest {
+
+	private final static long SETTLE_MILLIS = 50;
+	private final static long TIMEOUT_MILLIS = 10000;
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testInboxWatcher() throws Exception {
+		Path root = Files.createTempDirectory("wob-daemon"); //$NON-NLS-1$
+		Path inbox = root.resolve("inbox"); //$NON-NLS-1$
+		Path outbox = root.resolve("outbox"); //$NON-NLS-1$
+		Path done = root.resolve("done"); //$NON-NLS-1$
+		Path failed = root.resolve("failed"); //$NON-NLS-1$
+		Files.createDirectories(inbox);
+		byte[] a = "first file".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+		byte[] b = "second file".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+		Files.write(inbox.resolve("a.csv"), a); //$NON-NLS-1$
+
+		List<String> conversions = new CopyOnWriteArrayList<>();
+		try (InboxWatcher watcher = new InboxWatcher(inbox, outbox, done, failed, SETTLE_MILLIS, (input, response) -> {
+				conversions.add(input.getFileName().toString());
+				if (input.getFileName().toString().startsWith("bad")) //$NON-NLS-1$
+					throw new IOException("Import of "+input+" failed"); //$NON-NLS-1$ //$NON-NLS-2$
+				Files.copy(input, response);
+			})) {
+			Thread t = new Thread(watcher::run);
+			t.start();
+
+			Files.write(inbox.resolve("ignored.txt"), b); //$NON-NLS-1$
+			Path tmp = Files.write(root.resolve("b.tmp"), b); //$NON-NLS-1$
+			Files.move(tmp, inbox.resolve("b.csv"), StandardCopyOption.ATOMIC_MOVE); //$NON-NLS-1$
+
+			long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (watcher.getConverted() < 2 && System.currentTimeMillis() < end)
+				Thread.sleep(SETTLE_MILLIS);
+			tmp = Files.write(root.resolve("bad.tmp"), b); //$NON-NLS-1$
+			Files.move(tmp, inbox.resolve("bad.csv"), StandardCopyOption.ATOMIC_MOVE); //$NON-NLS-1$
+			while (watcher.getFailed() < 1 && System.currentTimeMillis() < end)
+				Thread.sleep(SETTLE_MILLIS);
+			assertEquals(2, watcher.getConverted());
+			assertEquals(1, watcher.getFailed());
+			watcher.stop();
+			t.join(TIMEOUT_MILLIS);
+			assertFalse(t.isAlive());
+		}
+
+		assertEquals(3, conversions.size());
+		assertEquals("a.csv", conversions.get(0)); //$NON-NLS-1$
+		assertEquals("b.csv", conversions.get(1)); //$NON-NLS-1$
+		assertEquals("bad.csv", conversions.get(2)); //$NON-NLS-1$
+		assertArrayEquals(a, Files.readAllBytes(outbox.resolve("a"+InboxWatcher.RESPONSE_SUFFIX))); //$NON-NLS-1$
+		assertArrayEquals(b, Files.readAllBytes(outbox.resolve("b"+InboxWatcher.RESPONSE_SUFFIX))); //$NON-NLS-1$
+		assertTrue(Files.exists(done.resolve("a.csv"))); //$NON-NLS-1$
+		assertTrue(Files.exists(done.resolve("b.csv"))); //$NON-NLS-1$
+		assertFalse(Files.exists(inbox.resolve("a.csv"))); //$NON-NLS-1$
+		assertTrue(Files.exists(failed.resolve("bad.csv"))); //$NON-NLS-1$
+		assertFalse(Files.exists(done.resolve("bad.csv"))); //$NON-NLS-1$
+		assertFalse(Files.exists(inbox.resolve("bad.csv"))); //$NON-NLS-1$
+		assertTrue(Files.exists(inbox.resolve("ignored.txt"))); //$NON-NLS-1$
+	}
+}
@@ -16,7 +16,6 @@ import com.zamek.wob.TestConsts;
 import com.zamek.wob.domain.order.Order;
 import com.zamek.wob.domain.orderitem.OrderItem;
 import com.zamek.wob.domain.orderitem.OrderItemStatus;
-import com.zamek.wob.util.DateUtils;
 
 
 public class DbTest {
@@ -47,18 +46,18 @@ public class DbTest {
 			order.setBuyerName(BUYERS_NAME);
 			order.setBuyerEmail(BUYERS_EMAIL);
 			order.setId(Long.valueOf(1));
-			order.setOrderDate(DateUtils.asDate(DATE));
+			order.setOrderDate(DATE);
 			order.setPostCode(ZIP);
-			order.setOrderTotalValue(42.0f);
+			order.setOrderTotalValue(4200);
 			em.persist(order);
 			
 			OrderItem item = new OrderItem();
 			item.setId(Long.valueOf(1));
 			item.setOrder(order);
 			item.setSKU(SKU);
-			item.setSalePrice(42.0f);
-			item.setShippingPrice(1.0f);
-			item.setTotalItemPrice(43.0f);
+			item.setSalePrice(4200);
+			item.setShippingPrice(100);
+			item.setTotalItemPrice(4300);
 			item.setStatus(OrderItemStatus.IN_STOCK);
 			em.persist(item);
 		}
@@ -1,11 +1,15 @@
 package com.zamek.wob.domain;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.Optional;
 
 import org.junit.Before;
@@ -16,23 +20,26 @@ import com.zamek.wob.domain.order.OrderBuilder;
 import com.zamek.wob.domain.orderitem.OrderItem;
 import com.zamek.wob.domain.orderitem.OrderItemBuilder;
 import com.zamek.wob.domain.orderitem.OrderItemStatus;
+import com.zamek.wob.util.LongHashSet;
+import com.zamek.wob.util.LongLongMap;
+import com.zamek.wob.util.LongObjectMap;
+import com.zamek.wob.util.Money;
+import com.zamek.wob.util.NumberChecker;
 
 public class DomainTest {
 
 	private final static long ITEM_ID = 42;
 	private final static long ORDER_ID = 4242;
 	
-	private final static float SALE_PRICE = 100.0f;
-	private final static float SHIPPING_PRICE = 20.0f;
-	private final static float TOTAL_PRICE = 120.0f;
+	private final static long SALE_PRICE = 10000;
+	private final static long SHIPPING_PRICE = 2000;
+	private final static long TOTAL_PRICE = 12000;
 	private final static String SKU = "SKU"; //$NON-NLS-1$
 	private final static String ADDRESS = "Planet Magrathea"; //$NON-NLS-1$
 	private final static int ZIP=1810;
 	private final static String EMAIL="zaphod.beeblebrox@magrathea.ma";	 //$NON-NLS-1$
 	private final static String NAME="Zaphod Beeblebrox"; //$NON-NLS-1$
 	private final static String DATE ="2000-10-20";  //$NON-NLS-1$
-	private final static float FLOAT_LIMIT = 0.1f;
-	private static SimpleDateFormat formatter = new SimpleDateFormat(OrderBuilder.DATE_FORMAT);
 	
 	private OrderItemBuilder correctItemBuilder;
 	private OrderBuilder correctOrderBuilder;
@@ -50,9 +57,9 @@ public class DomainTest {
 			
 			this.correctItemBuilder = new OrderItemBuilder();
 			this.correctItemBuilder.itemId(Long.toString(ITEM_ID))
-					   .salePrice(Float.toString(SALE_PRICE))
-					   .shippingPrice(Float.toString(SHIPPING_PRICE))
-					   .totalItemPrice(Float.toString(TOTAL_PRICE))
+					   .salePrice(Money.toString(SALE_PRICE))
+					   .shippingPrice(Money.toString(SHIPPING_PRICE))
+					   .totalItemPrice(Money.toString(TOTAL_PRICE))
 					   .sku(SKU)
 					   .status(OrderItemStatus.ST_IN_STOCK)
 					   .order(this.correctOrderBuilder.get().get());
@@ -73,18 +80,18 @@ public class DomainTest {
 			assertEquals(order.getAddress(), ADDRESS);
 			assertEquals(order.getBuyerEmail(), EMAIL);
 			assertEquals(order.getPostCode(), Integer.valueOf(ZIP));
-			assertEquals(order.getOrderDate(), formatter.parse(DATE));
+			assertEquals(order.getOrderDate(), LocalDate.parse(DATE));
 			
 			Optional<OrderItem> oi = this.correctItemBuilder.get();
 			assertTrue(oi.isPresent());
 			OrderItem item = oi.get();
 			assertEquals(item.getId(), Long.valueOf(ITEM_ID));
-			assertEquals(item.getSalePrice(), SALE_PRICE, FLOAT_LIMIT);
-			assertTrue(item.getSalePrice()>=1.0f);
-			assertTrue(item.getShippingPrice() >= 0.0f);
-			assertEquals(item.getShippingPrice(), SHIPPING_PRICE, FLOAT_LIMIT);
-			assertEquals(item.getTotalItemPrice(), TOTAL_PRICE, FLOAT_LIMIT);
-			assertEquals(item.getSalePrice() + item.getShippingPrice(), item.getTotalItemPrice(), FLOAT_LIMIT);
+			assertEquals(item.getSalePrice(), SALE_PRICE);
+			assertTrue(item.getSalePrice() >= Money.CENTS);
+			assertTrue(item.getShippingPrice() >= 0);
+			assertEquals(item.getShippingPrice(), SHIPPING_PRICE);
+			assertEquals(item.getTotalItemPrice(), TOTAL_PRICE);
+			assertEquals(item.getSalePrice() + item.getShippingPrice(), item.getTotalItemPrice());
 			assertEquals(item.getOrder(), order);
 			assertEquals(item.getSKU(), SKU);
 			assertEquals(item.getStatus(), OrderItemStatus.IN_STOCK);
@@ -143,6 +150,40 @@ public class DomainTest {
 			//NC			
 		}
 
+		for (String[] p : new String[][] {{"0.995", "-0.001"}, {"0.9951", "-0.004"}, {"+0.999", "-1e-3"}}) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+			try {
+				new OrderItemBuilder().salePrice(p[0]);
+				fail(p[0]);
+			}
+			catch (ConvertException e) {
+				assertEquals(ErrorCode.SALE_PRICE_MIN.getPrefix(), e.getMessage());
+			}
+			try {
+				new OrderItemBuilder().shippingPrice(p[1]);
+				fail(p[1]);
+			}
+			catch (ConvertException e) {
+				assertEquals(ErrorCode.SHIPPING_PRICE_MIN.getPrefix(), e.getMessage());
+			}
+			try {
+				ByteBuffer sale = bytes(p[0]);
+				ByteBuffer shipping = bytes(p[1]);
+				assertEquals(ErrorCode.SALE_PRICE_MIN, 
+						new OrderItemBuilder().lenient().salePrice(sale, 0, sale.limit()).getError().getCode());
+				assertEquals(ErrorCode.SHIPPING_PRICE_MIN, 
+						new OrderItemBuilder().lenient().salePrice("1").shippingPrice(shipping, 0, shipping.limit()).getError().getCode()); //$NON-NLS-1$
+			}
+			catch (ConvertException e) {
+				fail(e.getMessage());
+			}
+		}
+		try {
+			assertNull(new OrderItemBuilder().salePrice("1.000").shippingPrice("-0.000").getError()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		catch (ConvertException e) {
+			fail(e.getMessage());
+		}
+
 		try {
 			this.correctItemBuilder.itemId("asd"); //$NON-NLS-1$
 			fail();
@@ -195,7 +236,16 @@ public class DomainTest {
 		catch (@SuppressWarnings("unused") ConvertException e) {
 			fail();
 		}
-
+		
+		long hits = OrderBuilder.getEmailCache().getHits();
+		try {
+			new OrderBuilder().buyerEmail(EMAIL);
+			new OrderBuilder().buyerEmail("asd@@"); //$NON-NLS-1$
+			fail();
+		}
+		catch (@SuppressWarnings("unused") ConvertException e) {
+			assertEquals(hits + 2, OrderBuilder.getEmailCache().getHits());
+		}
 	}
 	
 	@Test
@@ -203,10 +253,10 @@ public class DomainTest {
 		try {
 			this.correctOrderBuilder.orderDate(null);
 			assertTrue(this.correctOrderBuilder.get().isPresent());
-			assertEquals(this.correctOrderBuilder.get().get().getOrderDate(), new Date());
+			assertEquals(this.correctOrderBuilder.get().get().getOrderDate(), LocalDate.now());
 			this.correctOrderBuilder.orderDate(""); //$NON-NLS-1$
 			assertTrue(this.correctOrderBuilder.get().isPresent());
-			assertEquals(this.correctOrderBuilder.get().get().getOrderDate(), new Date());
+			assertEquals(this.correctOrderBuilder.get().get().getOrderDate(), LocalDate.now());
 		}
 		catch (@SuppressWarnings("unused") ConvertException e) {
 			fail();			
@@ -220,4 +270,243 @@ public class DomainTest {
 			//NC
 		}
 	}
+	
+	private static ByteBuffer bytes(String s) {
+		return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void byteFieldTests() {
+		try {
+			ByteBuffer id = bytes(Long.toString(ORDER_ID));
+			ByteBuffer date = bytes(DATE);
+			OrderBuilder ob = new OrderBuilder()
+					.orderId(id, 0, id.limit())
+					.buyerName(NAME)
+					.address(ADDRESS)
+					.postCode(Integer.toString(ZIP))
+					.buyerEmail(EMAIL)
+					.orderDate(date, 0, date.limit());
+			assertEquals(this.correctOrderBuilder.get().get(), ob.get().get());
+			
+			for (String price : new String[] {"1", "42.5", "0.1", "9999.99", "+3.14159", "1.", ".5", "1.005", "12345678901234.56", "1e2"}) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+				ByteBuffer b = bytes(price);
+				long expected = Money.parse(price);
+				if (expected >= Money.CENTS) 
+					assertEquals(expected, 
+						new OrderItemBuilder().salePrice(b, 0, b.limit()).order(ob.get().get()).itemId("1").status("INSTOCK").get().get().getSalePrice()); //$NON-NLS-1$ //$NON-NLS-2$
+				assertEquals(expected, 
+						new OrderItemBuilder().salePrice("1").shippingPrice(b, 0, b.limit()).order(ob.get().get()).itemId("1").status("INSTOCK").get().get().getShippingPrice()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			
+			ByteBuffer status = bytes("outOfStock"); //$NON-NLS-1$
+			assertEquals(OrderItemStatus.OUT_OF_STOCK, 
+					new OrderItemBuilder().status(status, 0, status.limit()).salePrice("1").shippingPrice("0").order(ob.get().get()).itemId("1").get().get().getStatus()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		catch (ConvertException e) {
+			fail(e.getMessage());
+		}
+		
+		for (String wrong : new String[] {"-1", "asd", "1e"}) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			ByteBuffer b = bytes(wrong);
+			try {
+				this.correctItemBuilder.salePrice(b, 0, b.limit());
+				fail();
+			}
+			catch (ConvertException e) {
+				try {
+					this.correctItemBuilder.salePrice(wrong);
+					fail();
+				}
+				catch (ConvertException se) {
+					assertEquals(se.getMessage(), e.getMessage());
+				}
+			}
+		}
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void longHashSetTests() {
+		final int size = 100000;
+		LongHashSet set = new LongHashSet();
+		for (long i = -size; i < size; i += 2) 
+			assertTrue(set.add(i * ORDER_ID));
+		assertFalse(set.add(0));
+		assertFalse(set.add(-size * ORDER_ID));
+		assertEquals(size, set.size());
+		for (long i = -size; i < size; ++i) 
+			assertEquals(i % 2 == 0, set.contains(i * ORDER_ID));
+		assertFalse(set.contains(Long.MAX_VALUE));
+		assertTrue(set.memory() >= 16L * size && set.memory() <= 32L * size);
+		for (int expected : new int[] {1 << 16, (1 << 16) + 1})
+			assertEquals(LongHashSet.memoryEstimate(expected), new LongHashSet(expected).memory());
+		
+		set.clear();
+		assertEquals(0, set.size());
+		assertFalse(set.contains(0));
+		assertFalse(set.contains(ORDER_ID * 2));
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void longObjectMapTests() {
+		final int size = 10000;
+		LongObjectMap<String> map = new LongObjectMap<>();
+		assertTrue(map.isEmpty());
+		for (long i = 0; i < size; ++i) 
+			assertNull(map.put(i * ORDER_ID, Long.toString(i)));
+		assertEquals("1", map.put(ORDER_ID, "x")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(size, map.size());
+		assertEquals("0", map.get(0)); //$NON-NLS-1$
+		assertEquals("x", map.get(ORDER_ID)); //$NON-NLS-1$
+		assertEquals("42", map.get(42 * ORDER_ID)); //$NON-NLS-1$
+		assertNull(map.get(1));
+		
+		int count = 0;
+		for (String v : map) {
+			assertNotNull(v);
+			++count;
+		}
+		assertEquals(size, count);
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void longLongMapTests() {
+		final int size = 10000;
+		LongLongMap map = new LongLongMap();
+		for (long i = 0; i < size; ++i) 
+			map.put(i * ORDER_ID, -i);
+		map.put(ORDER_ID, 42);
+		assertEquals(size, map.size());
+		assertTrue(map.containsKey(0));
+		assertEquals(0, map.get(0, 1));
+		assertEquals(42, map.get(ORDER_ID, 0));
+		assertEquals(-4242, map.get(4242 * ORDER_ID, 0));
+		assertFalse(map.containsKey(1));
+		assertEquals(7, map.get(1, 7));
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void moneyTests() {
+		String[][] values = {
+				{"1", "100"}, {"42.5", "4250"}, {"0.1", "10"}, {"  9.99 ", "999"}, {"-3.14159", "-314"}, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+				{"1.005", "101"}, {"1.0049", "100"}, {"-0.005", "-1"}, {".5", "50"}, {"2.", "200"}, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+				{"1e2", "10000"}, {"1.5f", "150"}, {"0x1p3", "800"}, {"9999999999999999.99", "999999999999999999"} //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+		};
+		for (String[] v : values) {
+			long expected = Long.parseLong(v[1]);
+			assertEquals(v[0], expected, Money.parse(v[0]));
+			ByteBuffer b = bytes(v[0]);
+			if (Money.isDecimal(b, 0, b.limit()))
+				assertEquals(v[0], expected, Money.parseDecimal(b, 0, b.limit()));
+		}
+		for (String invalid : new String[] {"NaN", "-Infinity", "1e300"}) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			assertEquals(invalid, Money.INVALID, Money.parse(invalid));
+		
+		long total = 0;
+		for (int i = 0; i < 1000; ++i)
+			total += Money.parse("0.10"); //$NON-NLS-1$
+		assertEquals(100 * Money.CENTS, total);
+		assertEquals("1234.05", Money.toString(123405)); //$NON-NLS-1$
+		assertEquals("-0.50", Money.toString(-50)); //$NON-NLS-1$
+		
+		try {
+			new OrderItemBuilder().salePrice("NaN"); //$NON-NLS-1$
+			fail();
+		}
+		catch (ConvertException e) {
+			assertEquals("salePrice number format error:For input string: \"NaN\"", e.getMessage()); //$NON-NLS-1$
+		}
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void numberCheckerTests() {
+		String[] numbers = {"0", "42", "-42", "+42", "", " ", " 42 ", "-", "+", "4 2", "1.", ".5", ".", "+.5", "-.", "1e5", "1e", "1e+", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$ //$NON-NLS-12$ //$NON-NLS-13$ //$NON-NLS-14$ //$NON-NLS-15$ //$NON-NLS-16$ //$NON-NLS-17$ //$NON-NLS-18$
+				"1E-3", "1f", "1.5D", "1ff", "NaN", "-Infinity", "Inf", "NaNa", "0x1p3", "0x1.8P-2f", "0x1", "0xp1", "0x.8p1", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$ //$NON-NLS-12$ //$NON-NLS-13$
+				"asd", "1,5", "9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+				"99999999999999999999", "\u0664\u0662", "1_000"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		for (String n : numbers) {
+			String expected = null;
+			try {
+				Long.parseLong(n);
+			}
+			catch (NumberFormatException e) {
+				expected = e.getMessage();
+			}
+			assertEquals(n, Boolean.valueOf(expected == null), Boolean.valueOf(NumberChecker.isLong(n)));
+			if (expected != null)
+				assertEquals(expected, NumberChecker.longError(n));
+			
+			expected = null;
+			try {
+				Integer.parseInt(n);
+			}
+			catch (NumberFormatException e) {
+				expected = e.getMessage();
+			}
+			assertEquals(n, Boolean.valueOf(expected == null), Boolean.valueOf(NumberChecker.isInt(n)));
+			if (expected != null)
+				assertEquals(expected, NumberChecker.longError(n));
+			
+			expected = null;
+			try {
+				Float.parseFloat(n);
+			}
+			catch (NumberFormatException e) {
+				expected = e.getMessage();
+			}
+			assertEquals(n, Boolean.valueOf(expected == null), Boolean.valueOf(NumberChecker.isFloat(n)));
+			if (expected != null)
+				assertEquals(expected, NumberChecker.floatError(n));
+		}
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void lenientTests() throws ConvertException {
+		String[][] wrongs = { {"asd", "1", "INSTOCK", DATE}, {"42", "0.5", "INSTOCK", DATE}, {"42", "", "INSTOCK", DATE}, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+							  {"42", "1", "SOLD", DATE}, {"42", "1", "INSTOCK", "2000.10.20"}, {"", "1x", "SOLD", "x"} }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ 
+		for (String[] w : wrongs) {
+			String expected = null;
+			try {
+				Order o = new OrderBuilder().orderId(w[0]).buyerName(NAME).buyerEmail(EMAIL).address(ADDRESS).postCode(Integer.toString(ZIP)).orderDate(w[3]).get().get();
+				new OrderItemBuilder().order(o).itemId(Long.toString(ITEM_ID)).salePrice(w[1]).shippingPrice("0").status(w[2]); //$NON-NLS-1$
+				fail();
+			}
+			catch (ConvertException e) {
+				expected = e.getMessage();
+			}
+			
+			OrderBuilder ob = new OrderBuilder().lenient().orderId(w[0]).buyerName(NAME).buyerEmail(EMAIL).address(ADDRESS).postCode(Integer.toString(ZIP)).orderDate(w[3]);
+			ConvertError error = ob.getError();
+			if (error == null) {
+				assertTrue(ob.get().isPresent());
+				OrderItemBuilder ib = new OrderItemBuilder().lenient().order(ob.get().get()).itemId(Long.toString(ITEM_ID)).salePrice(w[1]).shippingPrice("0").status(w[2]); //$NON-NLS-1$
+				assertFalse(ib.get().isPresent());
+				error = ib.getError();
+			}
+			assertNotNull(error);
+			assertEquals(expected, error.getMessage());
+		}
+		
+		OrderBuilder ob = new OrderBuilder().lenient().orderId("asd").postCode("zip"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(ErrorCode.ORDER_ID, ob.getError().getCode());
+		assertFalse(ob.get().isPresent());
+		
+		for (String pc : new String[] {"zip", "4242424242", "", null}) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			ob = new OrderBuilder().lenient().orderId("42").postCode(pc); //$NON-NLS-1$
+			assertEquals(ErrorCode.POST_CODE_FORMAT, ob.getError().getCode());
+			assertFalse(ob.get().isPresent());
+		}
+		
+		OrderItemBuilder ib = new OrderItemBuilder().lenient().salePrice(null);
+		assertEquals(ErrorCode.SALE_PRICE_FORMAT, ib.getError().getCode());
+		ib = new OrderItemBuilder().lenient().salePrice("1").shippingPrice(null); //$NON-NLS-1$
+		assertEquals(ErrorCode.SHIPPING_PRICE_FORMAT, ib.getError().getCode());
+		assertFalse(ib.get().isPresent());
+	}
 }
@@ -0,0 +1,166 @@
+package com.zamek.wob.domain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zamek.wob.Consts;
+import com.zamek.wob.FakeFtpServer;
+import com.zamek.wob.ftp.FtpUploader;
+
+public class FtpTest {
+
+	private final static int LINES = 20000;
+
+	private static Path root;
+	private static Path local;
+	private static FakeFtpServer server;
+
+	@BeforeClass
+	public static void init() throws IOException {
+		root = Files.createTempDirectory("wob-ftp"); //$NON-NLS-1$
+		local = Files.createTempFile("wob-upload", ".csv"); //$NON-NLS-1$ //$NON-NLS-2$
+		try (Writer w = Files.newBufferedWriter(local)) {
+			w.write("LineNumber;Status;Message\n"); //$NON-NLS-1$
+			for (int i = 1; i <= LINES; ++i)
+				w.write(i % 100 == 0 ? i + ";ERROR;Duplicate orderitem\n" : i + ";OK;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		server = new FakeFtpServer(root);
+	}
+
+	@AfterClass
+	public static void cleanup() throws IOException {
+		server.close();
+		Files.deleteIfExists(local);
+	}
+
+	private static Configuration config(boolean compress, int attempts) {
+		Configuration cfg = new BaseConfiguration();
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_HOST, "127.0.0.1"); //$NON-NLS-1$
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_PORT, Integer.valueOf(server.getPort()));
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_COMPRESS, Boolean.valueOf(compress));
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_BUFFER_SIZE, Integer.valueOf(4096));
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_ATTEMPTS, Integer.valueOf(attempts));
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_BACKOFF, Long.valueOf(1));
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_TIMEOUT, Integer.valueOf(5000));
+		return cfg;
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testRestartedUpload() throws Exception {
+		server.failAfter(50000, 2);
+		int from = server.getCommands().size();
+		new FtpUploader(local.toString(), config(false, 5)).upload();
+
+		assertArrayEquals(Files.readAllBytes(local), Files.readAllBytes(server.resolve(local.toString())));
+		List<String> commands = server.getCommands().subList(from, server.getCommands().size());
+		// an ascii upload is not resumed, the stream is sent again from the beginning
+		assertEquals(0, commands.stream().filter(c -> c.startsWith("REST ") || c.startsWith("APPE ")).count()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(3, commands.stream().filter(c -> c.equals("STOR "+local)).count()); //$NON-NLS-1$
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testResumedCompressedUpload() throws Exception {
+		server.failAfter(5000, 1);
+		int from = server.getCommands().size();
+		new FtpUploader(local.toString(), config(true, 5)).upload();
+
+		ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(server.resolve(local + FtpUploader.GZ_SUFFIX)))) {
+			byte[] buf = new byte[4096];
+			for (int n = in.read(buf); n >= 0; n = in.read(buf))
+				uncompressed.write(buf, 0, n);
+		}
+		assertArrayEquals(Files.readAllBytes(local), uncompressed.toByteArray());
+		assertTrue(server.getCommands().subList(from, server.getCommands().size()).contains("REST 5000")); //$NON-NLS-1$
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testPartedUpload() throws Exception {
+		final int partSize = 30000;
+		server.failAfter(10000, 1);
+		int from = server.getCommands().size();
+		uploadParts(local, partSize);
+		assertTrue(server.getCommands().subList(from, server.getCommands().size()).stream().anyMatch(c -> c.startsWith("APPE "))); //$NON-NLS-1$
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testPartedCrlfUpload() throws Exception {
+		Path crlf = Files.createTempFile("wob-upload", ".crlf"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			try (Writer w = Files.newBufferedWriter(crlf)) {
+				for (int i = 1; i <= LINES / 10; ++i)
+					w.write(i + ";OK;\r\n"); //$NON-NLS-1$
+			}
+			// the server stores ascii transfers with \n, the parts must keep the \r\n of the checksums
+			uploadParts(crlf, 5000);
+		}
+		finally {
+			Files.deleteIfExists(crlf);
+		}
+	}
+
+	/**
+	 * Uploads a file in parts and checks the parts by the manifest
+	 */
+	private static void uploadParts(Path file, int partSize) throws Exception {
+		Configuration cfg = config(false, 5);
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_CONNECTIONS, Integer.valueOf(3));
+		cfg.setProperty(Consts.FTP_CONFIG_KEY_PART_SIZE, Integer.valueOf(partSize));
+		new FtpUploader(file.toString(), cfg).upload();
+
+		byte[] content = Files.readAllBytes(file);
+		List<String> manifest = Files.readAllLines(server.resolve(file + FtpUploader.MANIFEST_SUFFIX));
+		assertEquals(FtpUploader.MANIFEST_HEADER, manifest.get(0));
+		assertEquals((content.length + partSize - 1) / partSize + 1, manifest.size());
+		ByteArrayOutputStream joined = new ByteArrayOutputStream();
+		for (String line : manifest.subList(1, manifest.size())) {
+			String[] fields = line.split(";"); //$NON-NLS-1$
+			byte[] part = Files.readAllBytes(server.resolve(fields[0]));
+			assertEquals(joined.size(), Long.parseLong(fields[1]));
+			assertEquals(part.length, Long.parseLong(fields[2]));
+			assertEquals(new BigInteger(1, MessageDigest.getInstance(FtpUploader.CHECKSUM_ALGORITHM).digest(part)), new BigInteger(fields[3], 16));
+			joined.write(part);
+		}
+		assertArrayEquals(content, joined.toByteArray());
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void testFailedUpload() throws Exception {
+		server.failAfter(1000, 10);
+		int transfers = server.getTransfers();
+		try {
+			new FtpUploader(local.toString(), config(false, 3)).upload();
+			fail("Broken upload is finished"); //$NON-NLS-1$
+		}
+		catch (IOException e) {
+			assertEquals(transfers + 3, server.getTransfers());
+		}
+		finally {
+			server.failAfter(0, 0);
+		}
+	}
+}
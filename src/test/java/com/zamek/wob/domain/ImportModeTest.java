@@ -0,0 +1,551 @@
+package com.zamek.wob.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zamek.wob.TestConsts;
+import com.zamek.wob.csv.CSVImporter;
+import com.zamek.wob.csv.ResponseFile;
+import com.zamek.wob.db.CopyOrderWriter;
+import com.zamek.wob.db.IdLookup;
+import com.zamek.wob.db.OrderWriter;
+import com.zamek.wob.domain.order.Order;
+import com.zamek.wob.domain.orderitem.OrderItem;
+import com.zamek.wob.domain.orderitem.OrderItemStatus;
+
+/**
+ * Tests for the different reading and grouping modes of CSVImporter.
+ *
+ * Every test uses its own id range, because they share the test database.
+ */
+public class ImportModeTest {
+
+	private final static String TEST_PATH = "/tmp/";//$NON-NLS-1$
+	private final static String BUYERS_NAME = "Ford Prefect";  //$NON-NLS-1$
+	private final static String BUYERS_EMAIL ="ford.prefect@betelgeuse.bg";  //$NON-NLS-1$
+	private final static String ADDRESS = "Betelgeuse V";  //$NON-NLS-1$
+	private final static String ZIP = "4242";  //$NON-NLS-1$
+	private final static String SKU = "SKU";  //$NON-NLS-1$
+	private final static String DATE = "2018-03-12";  //$NON-NLS-1$
+	private final static int NUMBER_OF_ORDERS = 100;
+	private final static int NUMBER_OF_ITEMS = 10;
+
+	private static EntityManagerFactory emFactoryObj=Persistence.createEntityManagerFactory(TestConsts.PERSISTENCE_NAME);
+
+	private static EntityManager em;
+
+	@BeforeClass
+	public static void init() {
+		em=emFactoryObj.createEntityManager();
+	}
+
+	/**
+	 * Creates a valid input file. OrderIds are idBase+1.., OrderItemIds are idBase*10+..
+	 *
+	 * @param fileName name of the file
+	 * @param idBase first id of the file
+	 * @param interleaved if true, items of orders are mixed, otherwise the file is sorted by OrderId
+	 */
+	private static void createInput(String fileName, long idBase, boolean interleaved) {
+		writeInput(fileName, printer -> {
+			int lineNumber = 1;
+			for (int o=1; o<=NUMBER_OF_ORDERS; ++o) {
+				for (int i=0; i<NUMBER_OF_ITEMS; ++i) {
+					int order = interleaved ? (lineNumber - 1) % NUMBER_OF_ORDERS + 1 : o;
+					printer.printRecord(Integer.valueOf(lineNumber),
+							Long.valueOf(idBase * 10 + lineNumber),
+							Long.valueOf(idBase + order),
+							BUYERS_NAME,
+							BUYERS_EMAIL,
+							ADDRESS+order,
+							ZIP,
+							"42.5", //$NON-NLS-1$
+							"1.25",  //$NON-NLS-1$
+							SKU,
+							i%2==0 ? OrderItemStatus.IN_STOCK : OrderItemStatus.OUT_OF_STOCK,
+							DATE);
+					++lineNumber;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Printing the lines of an input file
+	 */
+	private interface Lines {
+		void print(CSVPrinter printer) throws IOException;
+	}
+
+	/**
+	 * Writes an input file with the header in the default charset
+	 *
+	 * @param fileName name of the file
+	 * @param lines prints the lines after the header
+	 */
+	private static void writeInput(String fileName, Lines lines) {
+		writeInput(fileName, Charset.defaultCharset(), lines);
+	}
+
+	/**
+	 * Writes an input file with the header
+	 *
+	 * @param fileName name of the file
+	 * @param charset charset of the file
+	 * @param lines prints the lines after the header
+	 */
+	private static void writeInput(String fileName, Charset charset, Lines lines) {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(fileName), charset)){
+			try(CSVPrinter printer = new CSVPrinter(writer, CSVImporter.CSV_FILE_FORMAT)) {
+				printer.printRecord((Object[])CSVImporter.HEADER);
+				lines.print(printer);
+			}
+		}
+		catch (IOException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that every line of response is OK and they are in input order
+	 *
+	 * @param fileName name of the response file
+	 */
+	private static void checkResponse(String fileName) {
+		int ln=1;
+		try (Reader in = new FileReader(fileName)) {
+			try (CSVParser csvFileParser = new CSVParser(in, CSVImporter.CSV_FILE_FORMAT) ) {
+				for(CSVRecord rec:csvFileParser) {
+					assertEquals(ln++, Integer.parseInt(rec.get(ResponseFile.LINE_NUMBER)));
+					assertEquals(ResponseFile.Status.OK, ResponseFile.Status.byString(rec.get(ResponseFile.STATUS)));
+					assertTrue(StringUtils.isBlank(rec.get(ResponseFile.MESSAGE)));
+				}
+			}
+		}
+		catch (Exception e) {
+			fail(e.getMessage());
+		}
+		assertEquals(NUMBER_OF_ORDERS * NUMBER_OF_ITEMS, ln-1);
+	}
+
+	/**
+	 * Checks the orders and items in the database
+	 *
+	 * @param idBase first id of the file
+	 * @param interleaved the file was created interleaved
+	 */
+	private static void checkDb(long idBase, boolean interleaved) {
+		em.clear();
+		for (int o=1; o<=NUMBER_OF_ORDERS; ++o) {
+			Order order = em.find(Order.class, Long.valueOf(idBase + o));
+			assertNotNull(order);
+			assertEquals(NUMBER_OF_ITEMS * (4250 + 125), order.getOrderTotalValue());
+		}
+		for (int l=1; l<=NUMBER_OF_ORDERS * NUMBER_OF_ITEMS; ++l) {
+			OrderItem item = em.find(OrderItem.class, Long.valueOf(idBase * 10 + l));
+			assertNotNull(item);
+			assertEquals(idBase + (interleaved ? (l-1) % NUMBER_OF_ORDERS : (l-1) / NUMBER_OF_ITEMS) + 1, item.getOrder().getId().longValue());
+		}
+	}
+
+	private static void importAndCheck(CSVImporter importer, String response, long idBase, boolean interleaved) {
+		assertTrue(importer.process());
+		assertEquals(NUMBER_OF_ORDERS * NUMBER_OF_ITEMS, importer.getProcessedRows());
+		assertEquals(NUMBER_OF_ORDERS * NUMBER_OF_ITEMS, importer.getValidRows());
+		assertEquals(0, importer.getErrorRows());
+		checkResponse(response);
+		checkDb(idBase, interleaved);
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testParallelReading() {
+		final long idBase = 100000;
+		String input = TEST_PATH + "parallel.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "parallel.response"; //$NON-NLS-1$
+		createInput(input, idBase, false);
+		CSVImporter importer = new CSVImporter(input, response, em)
+				.setThreads(4)
+				.setChunkSize(1);
+		importAndCheck(importer, response, idBase, false);
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testChunkBoundaries() {
+		final long idBase = 110000;
+		String input = TEST_PATH + "boundaries.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "boundaries.response"; //$NON-NLS-1$
+		createInput(input, idBase, true);
+		// not a multiple of the line length, so the ranges end in the middle of lines and are extended
+		CSVImporter importer = new CSVImporter(input, response, em)
+				.setThreads(3)
+				.setChunkSize(333);
+		importAndCheck(importer, response, idBase, true);
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testChunkedCommit() {
+		final long idBase = 200000;
+		String input = TEST_PATH + "chunked.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "chunked.response"; //$NON-NLS-1$
+		createInput(input, idBase, true);
+		CSVImporter importer = new CSVImporter(input, response, em)
+				.setCommitSize(7);
+		importAndCheck(importer, response, idBase, true);
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testCopyFallback() {
+		final long idBase = 300000;
+		String input = TEST_PATH + "copy.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "copy.response"; //$NON-NLS-1$
+		createInput(input, idBase, true);
+		assertFalse(CopyOrderWriter.isSupported(em));
+		CSVImporter importer = new CSVImporter(input, response, em)
+				.setBackend(OrderWriter.Backend.COPY)
+				.setCommitSize(13);
+		importAndCheck(importer, response, idBase, true);
+	}
+
+	/**
+	 * Reads the messages of a response file
+	 * 
+	 * @param fileName name of the response file
+	 * @return messages in line order
+	 */
+	private static List<String> readMessages(String fileName) {
+		List<String> messages = new ArrayList<>();
+		try (Reader in = new FileReader(fileName)) {
+			try (CSVParser csvFileParser = new CSVParser(in, CSVImporter.CSV_FILE_FORMAT) ) {
+				for(CSVRecord rec:csvFileParser) 
+					messages.add(rec.get(ResponseFile.MESSAGE));
+			}
+		}
+		catch (Exception e) {
+			fail(e.getMessage());
+		}
+		return messages;
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void testIdLookup() {
+		final long idBase = 400000;
+		String input = TEST_PATH + "lookup.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "lookup.response"; //$NON-NLS-1$
+		createInput(input, idBase, false);
+		importAndCheck(new CSVImporter(input, response, em), response, idBase, false);
+		
+		CSVImporter importer = new CSVImporter(input, response, em).setIdLookup(IdLookup.Strategy.FIND);
+		assertTrue(importer.process());
+		assertEquals(0, importer.getValidRows());
+		List<String> find = readMessages(response);
+		
+		importer = new CSVImporter(input, response, em).setIdLookup(IdLookup.Strategy.BATCH);
+		assertTrue(importer.process());
+		assertEquals(0, importer.getValidRows());
+		List<String> batch = readMessages(response);
+		
+		importer = new CSVImporter(input, response, em).setIdLookup(IdLookup.Strategy.PRELOAD);
+		assertTrue(importer.process());
+		assertEquals(0, importer.getValidRows());
+		List<String> preload = readMessages(response);
+		
+		assertEquals(NUMBER_OF_ORDERS * NUMBER_OF_ITEMS, find.size());
+		assertEquals("OrderId already exists in database: "+(idBase + 1), find.get(0)); //$NON-NLS-1$
+		assertEquals(find, batch);
+		assertEquals(find, preload);
+	}
+
+	private static void printLine(CSVPrinter printer, int lineNumber, long itemId, long orderId, String address) throws IOException {
+		printLine(printer, lineNumber, itemId, orderId, address, ZIP);
+	}
+	
+	private static void printLine(CSVPrinter printer, int lineNumber, long itemId, long orderId, String address, String zip) throws IOException {
+		printer.printRecord(Integer.valueOf(lineNumber), Long.valueOf(itemId), Long.valueOf(orderId), BUYERS_NAME, BUYERS_EMAIL, 
+				address, zip, "42.5", "1.25", SKU, OrderItemStatus.IN_STOCK, DATE); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+	
+	@SuppressWarnings("static-method")
+	@Test
+	public void testOrderConflict() {
+		final long orderId = 500001;
+		String input = TEST_PATH + "conflict.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "conflict.response"; //$NON-NLS-1$
+		writeInput(input, printer -> {
+			for (int l=1; l<=3; ++l)
+				printLine(printer, l, orderId * 10 + l, orderId, l == 2 ? ADDRESS + l : ADDRESS);
+		});
+		CSVImporter importer = new CSVImporter(input, response, em);
+		assertTrue(importer.process());
+		assertEquals(2, importer.getValidRows());
+		assertEquals(1, importer.getOrders().size());
+		
+		List<String> messages = readMessages(response);
+		assertEquals(3, messages.size());
+		assertTrue(StringUtils.isBlank(messages.get(0)));
+		assertEquals("Order data conflicts with a previous line of OrderId: "+orderId, messages.get(1)); //$NON-NLS-1$
+		assertTrue(StringUtils.isBlank(messages.get(2)));
+		
+		em.clear();
+		Order order = em.find(Order.class, Long.valueOf(orderId));
+		assertNotNull(order);
+		assertEquals(ADDRESS, order.getAddress());
+		assertEquals(2 * (4250 + 125), order.getOrderTotalValue());
+		assertNull(em.find(OrderItem.class, Long.valueOf(orderId * 10 + 2)));
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testDuplicateItem() {
+		final long orderId = 600001;
+		final long itemId = 6000010;
+		String input = TEST_PATH + "duplicate.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "duplicate.response"; //$NON-NLS-1$
+		writeInput(input, printer -> {
+			printLine(printer, 1, itemId, orderId, ADDRESS);
+			printLine(printer, 2, itemId + 1, orderId, ADDRESS);
+			printLine(printer, 3, itemId, orderId + 1, ADDRESS);
+			printLine(printer, 4, itemId + 1, orderId, ADDRESS);
+			printLine(printer, 5, itemId + 2, orderId + 1, ADDRESS);
+		});
+		CSVImporter importer = new CSVImporter(input, response, em);
+		assertTrue(importer.process());
+		assertEquals(3, importer.getValidRows());
+		
+		List<String> messages = readMessages(response);
+		assertEquals(5, messages.size());
+		assertTrue(messages.get(2).startsWith("Duplicate orderitem:")); //$NON-NLS-1$
+		assertTrue(messages.get(3).startsWith("Duplicate orderitem:")); //$NON-NLS-1$
+		assertTrue(StringUtils.isBlank(messages.get(4)));
+		
+		em.clear();
+		assertEquals(orderId, em.find(OrderItem.class, Long.valueOf(itemId)).getOrder().getId().longValue());
+		assertEquals(orderId + 1, em.find(OrderItem.class, Long.valueOf(itemId + 2)).getOrder().getId().longValue());
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testSortedGrouping() {
+		final long idBase = 700000;
+		String input = TEST_PATH + "sorted.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "sorted.response"; //$NON-NLS-1$
+		createInput(input, idBase, false);
+		CSVImporter importer = new CSVImporter(input, response, em)
+				.setGrouping(CSVImporter.Grouping.SORTED)
+				.setThreads(2)
+				.setCommitSize(7);
+		importAndCheck(importer, response, idBase, false);
+		assertTrue(importer.getOrders().isEmpty());
+		
+		final long orderId = 700501;
+		input = TEST_PATH + "unsorted.csv"; //$NON-NLS-1$
+		response = TEST_PATH + "unsorted.response"; //$NON-NLS-1$
+		writeInput(input, printer -> {
+			printLine(printer, 1, orderId * 10 + 1, orderId + 1, ADDRESS);
+			printLine(printer, 2, orderId * 10 + 2, orderId + 1, ADDRESS);
+			printLine(printer, 3, orderId * 10 + 3, orderId, ADDRESS);
+			printLine(printer, 4, orderId * 10 + 4, orderId + 2, ADDRESS);
+		});
+		importer = new CSVImporter(input, response, em).setGrouping(CSVImporter.Grouping.SORTED);
+		assertTrue(importer.process());
+		assertEquals(3, importer.getValidRows());
+		
+		List<String> messages = readMessages(response);
+		assertEquals(4, messages.size());
+		assertEquals("OrderId is not sorted: "+orderId+" is after OrderId: "+(orderId + 1), messages.get(2)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(StringUtils.isBlank(messages.get(3)));
+		
+		em.clear();
+		assertEquals(2 * (4250 + 125), em.find(Order.class, Long.valueOf(orderId + 1)).getOrderTotalValue());
+		assertEquals(4250 + 125, em.find(Order.class, Long.valueOf(orderId + 2)).getOrderTotalValue());
+		assertNull(em.find(Order.class, Long.valueOf(orderId)));
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testExternalGrouping() throws IOException {
+		final long idBase = 800000;
+		String input = TEST_PATH + "external.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "external.response"; //$NON-NLS-1$
+		Path spill = Files.createTempDirectory("wob-spill"); //$NON-NLS-1$
+		createInput(input, idBase, true);
+		CSVImporter importer = new CSVImporter(input, response, em)
+				.setGrouping(CSVImporter.Grouping.EXTERNAL)
+				.setMemoryBudget(16 * 1024)
+				.setSpillDirectory(spill.toString())
+				.setCommitSize(7);
+		importAndCheck(importer, response, idBase, true);
+		assertEquals(NUMBER_OF_ORDERS * NUMBER_OF_ITEMS, importer.getSpilledRows());
+		try (Stream<Path> runs = Files.list(spill)) {
+			assertEquals(0, runs.count());
+		}
+		
+		final long orderId = 800501;
+		input = TEST_PATH + "external-conflict.csv"; //$NON-NLS-1$
+		response = TEST_PATH + "external-conflict.response"; //$NON-NLS-1$
+		writeInput(input, printer -> {
+			printLine(printer, 1, orderId * 10 + 1, orderId + 1, ADDRESS);
+			printLine(printer, 2, orderId * 10 + 2, orderId, ADDRESS);
+			printLine(printer, 3, orderId * 10 + 3, orderId + 1, ADDRESS + 3);
+			printLine(printer, 4, orderId * 10 + 4, orderId + 1, ADDRESS);
+			printLine(printer, 5, orderId * 10 + 2, orderId + 1, ADDRESS);
+		});
+		importer = new CSVImporter(input, response, em)
+				.setGrouping(CSVImporter.Grouping.EXTERNAL)
+				.setMemoryBudget(1)
+				.setSpillDirectory(spill.toString());
+		assertTrue(importer.process());
+		assertEquals(3, importer.getValidRows());
+		
+		List<String> messages = readMessages(response);
+		assertEquals(5, messages.size());
+		assertEquals("Order data conflicts with a previous line of OrderId: "+(orderId + 1), messages.get(2)); //$NON-NLS-1$
+		assertTrue(messages.get(4).startsWith("Duplicate orderitem:")); //$NON-NLS-1$
+		
+		em.clear();
+		assertEquals(2 * (4250 + 125), em.find(Order.class, Long.valueOf(orderId + 1)).getOrderTotalValue());
+		assertEquals(4250 + 125, em.find(Order.class, Long.valueOf(orderId)).getOrderTotalValue());
+		assertEquals(orderId + 1, em.find(OrderItem.class, Long.valueOf(orderId * 10 + 4)).getOrder().getId().longValue());
+		assertNull(em.find(OrderItem.class, Long.valueOf(orderId * 10 + 3)));
+		Files.delete(spill);
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testBadPostCode() {
+		for (int threads : new int[] {1, 2}) {
+			final long orderId = 900001 + threads * 10;
+			String input = TEST_PATH + "postcode.csv"; //$NON-NLS-1$
+			String response = TEST_PATH + "postcode.response"; //$NON-NLS-1$
+			writeInput(input, printer -> {
+				printLine(printer, 1, orderId * 10 + 1, orderId, ADDRESS);
+				printLine(printer, 2, orderId * 10 + 2, orderId + 1, ADDRESS, "zip"); //$NON-NLS-1$
+				printLine(printer, 3, orderId * 10 + 3, orderId + 2, ADDRESS, "99999999999"); //$NON-NLS-1$
+				printLine(printer, 4, orderId * 10 + 4, orderId + 3, ADDRESS);
+			});
+			CSVImporter importer = new CSVImporter(input, response, em).setThreads(threads);
+			assertTrue(importer.process());
+			assertEquals(4, importer.getProcessedRows());
+			assertEquals(2, importer.getValidRows());
+			
+			List<String> messages = readMessages(response);
+			assertEquals(4, messages.size());
+			assertEquals("PostCode number format error:For input string: \"zip\"", messages.get(1)); //$NON-NLS-1$
+			assertEquals("PostCode number format error:For input string: \"99999999999\"", messages.get(2)); //$NON-NLS-1$
+			assertTrue(StringUtils.isBlank(messages.get(3)));
+			
+			em.clear();
+			assertNotNull(em.find(Order.class, Long.valueOf(orderId + 3)));
+			assertNull(em.find(Order.class, Long.valueOf(orderId + 1)));
+		}
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testCompactTrailer() throws IOException {
+		final long orderId = 950001;
+		String input = TEST_PATH + "trailer.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "trailer.response"; //$NON-NLS-1$
+		writeInput(input, printer -> {
+			printLine(printer, 1, orderId * 10 + 1, orderId, ADDRESS);
+			printLine(printer, 2, orderId * 10 + 2, orderId + 1, ADDRESS, "zip"); //$NON-NLS-1$
+			printLine(printer, 3, orderId * 10 + 3, orderId, ADDRESS);
+			printLine(printer, 4, orderId * 10 + 1, orderId, ADDRESS);
+		});
+		CSVImporter importer = new CSVImporter(input, response, em).setResponseFormat(ResponseFile.Format.COMPACT);
+		assertTrue(importer.process());
+		assertEquals(4, importer.getProcessedRows());
+		assertEquals(2, importer.getValidRows());
+		assertEquals(2, importer.getErrorRows());
+		
+		List<String> lines = Files.readAllLines(Paths.get(response));
+		assertEquals(6, lines.size());
+		assertTrue(lines.get(2).startsWith("2;ERROR;")); //$NON-NLS-1$
+		assertTrue(lines.get(4).startsWith("4;ERROR;")); //$NON-NLS-1$
+		assertEquals("TOTAL;ERROR;processed=4,valid=2,error=2", lines.get(5)); //$NON-NLS-1$
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testMalformedInput() {
+		for (int threads : new int[] {1, 2}) {
+			final long orderId = 960001 + threads * 10;
+			String input = TEST_PATH + "latin1.csv"; //$NON-NLS-1$
+			String response = TEST_PATH + "latin1.response"; //$NON-NLS-1$
+			writeInput(input, StandardCharsets.ISO_8859_1, printer -> {
+				printLine(printer, 1, orderId * 10 + 1, orderId, "Caf\u00e9 street"); //$NON-NLS-1$
+			});
+			CSVImporter importer = new CSVImporter(input, response, em).setThreads(threads);
+			assertTrue(importer.process());
+			assertEquals(1, importer.getValidRows());
+			
+			em.clear();
+			Order order = em.find(Order.class, Long.valueOf(orderId));
+			assertNotNull(order);
+			assertEquals("Caf\ufffd street", order.getAddress()); //$NON-NLS-1$
+		}
+	}
+
+	@SuppressWarnings("static-method")
+	@Test
+	public void testQuotedLines() {
+		final long orderId = 970001;
+		String input = TEST_PATH + "quoted.csv"; //$NON-NLS-1$
+		String response = TEST_PATH + "quoted.response"; //$NON-NLS-1$
+		String multiLine = "Betelgeuse V;\n\"Heart of Gold\""; //$NON-NLS-1$
+		// longer than a block of the sequential reader with record separators everywhere
+		String longAddress = StringUtils.repeat("Magrathea\n", 200000); //$NON-NLS-1$
+		writeInput(input, printer -> {
+			printLine(printer, 1, orderId * 10 + 1, orderId, multiLine);
+			printer.printRecord("2", String.valueOf(orderId * 10 + 2), "x", BUYERS_NAME, BUYERS_EMAIL, //$NON-NLS-1$ //$NON-NLS-2$
+					longAddress, ZIP, "42.5", "1.25", SKU, OrderItemStatus.IN_STOCK, DATE); //$NON-NLS-1$ //$NON-NLS-2$
+			printLine(printer, 3, orderId * 10 + 3, orderId + 1, ADDRESS);
+		});
+		CSVImporter importer = new CSVImporter(input, response, em).setThreads(1);
+		assertTrue(importer.process());
+		assertEquals(3, importer.getProcessedRows());
+		assertEquals(2, importer.getValidRows());
+		
+		List<String> messages = readMessages(response);
+		assertEquals(3, messages.size());
+		assertEquals("OrderId error:For input string: \"x\"", messages.get(1)); //$NON-NLS-1$
+		
+		em.clear();
+		assertEquals(multiLine, em.find(Order.class, Long.valueOf(orderId)).getAddress());
+		assertNotNull(em.find(Order.class, Long.valueOf(orderId + 1)));
+	}
+}